@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.batch.MyBatisBatchItemWriter;
+import org.mybatis.spring.batch.builder.MyBatisBatchItemWriterBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.Chunk;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Measures the time {@link MyBatisBatchItemWriter} takes to write one chunk, inside a transaction as a step would, by
+ * chunk size and maximum JDBC batch size, with a single statement, with items routed to two statements and with the
+ * chunk split into partitions written concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchItemWriterBenchmark {
+
+  private static final int ROWS = 10_000;
+
+  private static final int PARTITIONS = 4;
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int chunkSize;
+
+  @Param({ "0", "1000" })
+  public int maxBatchSize;
+
+  private EmbeddedDatabase database;
+
+  private MyBatisBatchItemWriter<BenchmarkItem> writer;
+
+  private MyBatisBatchItemWriter<BenchmarkItem> routingWriter;
+
+  private MyBatisBatchItemWriter<BenchmarkItem> partitionedWriter;
+
+  private ThreadPoolTaskExecutor taskExecutor;
+
+  private TransactionTemplate transactionTemplate;
+
+  private Chunk<BenchmarkItem> chunk;
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(ROWS);
+    SqlSessionFactory sqlSessionFactory = BenchmarkDatabase.sqlSessionFactory(database);
+    writer = new MyBatisBatchItemWriterBuilder<BenchmarkItem>().sqlSessionFactory(sqlSessionFactory)
+        .statementId(BenchmarkDatabase.NAMESPACE + ".update").maxBatchSize(maxBatchSize).build();
+    writer.afterPropertiesSet();
+    routingWriter = new MyBatisBatchItemWriterBuilder<BenchmarkItem>().sqlSessionFactory(sqlSessionFactory)
+        .statementIdClassifier(
+            item -> BenchmarkDatabase.NAMESPACE + (item.getId() % 2 == 0 ? ".update" : ".updateName"))
+        .maxBatchSize(maxBatchSize).build();
+    routingWriter.afterPropertiesSet();
+    DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(database);
+    transactionTemplate = new TransactionTemplate(transactionManager);
+
+    taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(PARTITIONS);
+    taskExecutor.setThreadNamePrefix("benchmark-writer-");
+    taskExecutor.initialize();
+    partitionedWriter = new MyBatisBatchItemWriterBuilder<BenchmarkItem>().sqlSessionFactory(sqlSessionFactory)
+        .statementId(BenchmarkDatabase.NAMESPACE + ".update").maxBatchSize(maxBatchSize).partitions(PARTITIONS)
+        .partitionKeyConverter(BenchmarkItem::getId).taskExecutor(taskExecutor).transactionManager(transactionManager)
+        .build();
+    partitionedWriter.afterPropertiesSet();
+
+    List<BenchmarkItem> items = new ArrayList<>(chunkSize);
+    for (int i = 1; i <= chunkSize; i++) {
+      BenchmarkItem item = new BenchmarkItem();
+      item.setId(i);
+      item.setName("item-" + i);
+      item.setAmount(i % 1000);
+      items.add(item);
+    }
+    chunk = new Chunk<>(items);
+  }
+
+  @TearDown
+  public void tearDown() {
+    taskExecutor.shutdown();
+    database.shutdown();
+  }
+
+  @Benchmark
+  public void writeChunk() {
+    transactionTemplate.executeWithoutResult(status -> writer.write(chunk));
+  }
+
+  @Benchmark
+  public void writeChunkRoutedToTwoStatements() {
+    transactionTemplate.executeWithoutResult(status -> routingWriter.write(chunk));
+  }
+
+  @Benchmark
+  public void writeChunkInPartitions() {
+    transactionTemplate.executeWithoutResult(status -> partitionedWriter.write(chunk));
+  }
+
+}
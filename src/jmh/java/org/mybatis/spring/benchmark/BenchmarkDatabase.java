@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Embedded Derby database and MyBatis configuration shared by the benchmarks.
+ */
+final class BenchmarkDatabase {
+
+  static final String NAMESPACE = BenchmarkMapper.class.getName();
+
+  private BenchmarkDatabase() {
+    // do nothing
+  }
+
+  static EmbeddedDatabase create(int rows) {
+    EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.DERBY)
+        .generateUniqueName(true).build();
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+    jdbcTemplate.execute("CREATE TABLE bench_item (id INTEGER NOT NULL PRIMARY KEY, name VARCHAR(64), amount INTEGER)");
+    List<Object[]> values = new ArrayList<>(rows);
+    for (int i = 1; i <= rows; i++) {
+      values.add(new Object[] { i, "item-" + i, i % 1000 });
+    }
+    jdbcTemplate.batchUpdate("INSERT INTO bench_item (id, name, amount) VALUES (?, ?, ?)", values);
+    return database;
+  }
+
+  static SqlSessionFactory sqlSessionFactory(DataSource dataSource) throws Exception {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(dataSource);
+    factoryBean.setMapperLocations(mapperXml(NAMESPACE));
+    return factoryBean.getObject();
+  }
+
+  static Resource mapperXml(String namespace) {
+    String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + "<!DOCTYPE mapper\n"
+        + "    PUBLIC \"-//mybatis.org//DTD Mapper 3.0//EN\"\n"
+        + "    \"https://mybatis.org/dtd/mybatis-3-mapper.dtd\">\n" + "<mapper namespace=\"" + namespace + "\">\n"
+        + "  <resultMap id=\"item\" type=\"" + BenchmarkItem.class.getName() + "\">\n"
+        + "    <id property=\"id\" column=\"id\"/>\n" + "    <result property=\"name\" column=\"name\"/>\n"
+        + "    <result property=\"amount\" column=\"amount\"/>\n" + "  </resultMap>\n"
+        + "  <sql id=\"columns\">id, name, amount</sql>\n"
+        + "  <select id=\"selectById\" resultMap=\"item\">\n"
+        + "    SELECT <include refid=\"columns\"/> FROM bench_item WHERE id = #{id}\n" + "  </select>\n"
+        + "  <select id=\"selectAll\" resultMap=\"item\">\n"
+        + "    SELECT <include refid=\"columns\"/> FROM bench_item ORDER BY id\n" + "  </select>\n"
+        + "  <select id=\"selectAllAfter\" resultMap=\"item\">\n"
+        + "    SELECT <include refid=\"columns\"/> FROM bench_item\n"
+        + "    <if test=\"_lastKey != null\">WHERE id &gt; #{_lastKey}</if>\n" + "    ORDER BY id\n"
+        + "  </select>\n"
+        + "  <select id=\"selectPage\" resultMap=\"item\">\n"
+        + "    SELECT <include refid=\"columns\"/> FROM bench_item ORDER BY id\n"
+        + "    OFFSET #{_skiprows} ROWS FETCH NEXT #{_pagesize} ROWS ONLY\n" + "  </select>\n"
+        + "  <select id=\"selectPageAfter\" resultMap=\"item\">\n"
+        + "    SELECT <include refid=\"columns\"/> FROM bench_item\n"
+        + "    <if test=\"_lastKey != null\">WHERE id &gt; #{_lastKey}</if>\n"
+        + "    ORDER BY id FETCH FIRST #{_pagesize} ROWS ONLY\n" + "  </select>\n"
+        + "  <update id=\"update\">\n" + "    UPDATE bench_item SET amount = #{amount} WHERE id = #{id}\n"
+        + "  </update>\n" + "  <update id=\"updateName\">\n"
+        + "    UPDATE bench_item SET name = #{name} WHERE id = #{id}\n" + "  </update>\n" + "</mapper>\n";
+    return new ByteArrayResource(xml.getBytes(StandardCharsets.UTF_8), namespace + ".xml");
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.batch.MyBatisCursorItemReader;
+import org.mybatis.spring.batch.MyBatisPagingItemReader;
+import org.mybatis.spring.batch.builder.MyBatisCursorItemReaderBuilder;
+import org.mybatis.spring.batch.builder.MyBatisPagingItemReaderBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Measures the time {@link MyBatisCursorItemReader} and {@link MyBatisPagingItemReader} take to read a whole table:
+ * the cursor reader with and without streaming hints or a producer thread, and the paging reader with offset and with
+ * keyset paging and with pages loaded ahead. Also measures the time the cursor reader takes to read the second half of
+ * the table after a restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ItemReaderBenchmark {
+
+  @Param({ "10000", "100000" })
+  public int rows;
+
+  @Param({ "100", "1000" })
+  public int pageSize;
+
+  private EmbeddedDatabase database;
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  private ThreadPoolTaskExecutor taskExecutor;
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(rows);
+    sqlSessionFactory = BenchmarkDatabase.sqlSessionFactory(database);
+    taskExecutor = new ThreadPoolTaskExecutor();
+    taskExecutor.setCorePoolSize(1);
+    taskExecutor.setThreadNamePrefix("benchmark-prefetch-");
+    taskExecutor.initialize();
+  }
+
+  @TearDown
+  public void tearDown() {
+    taskExecutor.shutdown();
+    database.shutdown();
+  }
+
+  @Benchmark
+  public void cursorReader(Blackhole blackhole) throws Exception {
+    MyBatisCursorItemReader<BenchmarkItem> reader = new MyBatisCursorItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectAll").saveState(false)
+        .build();
+    readAll(reader, blackhole);
+  }
+
+  @Benchmark
+  public void streamingCursorReader(Blackhole blackhole) throws Exception {
+    MyBatisCursorItemReader<BenchmarkItem> reader = new MyBatisCursorItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectAll").fetchSize(pageSize)
+        .resultSetType(ResultSetType.FORWARD_ONLY).connectionAutoCommit(false).saveState(false).build();
+    readAll(reader, blackhole);
+  }
+
+  @Benchmark
+  public void queuedCursorReader(Blackhole blackhole) throws Exception {
+    MyBatisCursorItemReader<BenchmarkItem> reader = new MyBatisCursorItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectAll")
+        .queueCapacity(pageSize).taskExecutor(taskExecutor).saveState(false).build();
+    readAll(reader, blackhole);
+  }
+
+  @Benchmark
+  public void restartCursorReaderSkippingRows(Blackhole blackhole) throws Exception {
+    MyBatisCursorItemReader<BenchmarkItem> reader = new MyBatisCursorItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectAllAfter").build();
+    readAll(reader, restartContext(reader.getExecutionContextKey("read.count"), null, null), blackhole);
+  }
+
+  @Benchmark
+  public void restartCursorReaderWithSortKey(Blackhole blackhole) throws Exception {
+    MyBatisCursorItemReader<BenchmarkItem> reader = new MyBatisCursorItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectAllAfter")
+        .sortKeyConverter(BenchmarkItem::getId).build();
+    readAll(reader, restartContext(reader.getExecutionContextKey("read.count"),
+        reader.getExecutionContextKey("last.key"), rows / 2), blackhole);
+  }
+
+  @Benchmark
+  public void pagingReader(Blackhole blackhole) throws Exception {
+    MyBatisPagingItemReader<BenchmarkItem> reader = new MyBatisPagingItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectPage")
+        .pageSize(pageSize).saveState(false).build();
+    readAll(reader, blackhole);
+  }
+
+  @Benchmark
+  public void keysetPagingReader(Blackhole blackhole) throws Exception {
+    MyBatisPagingItemReader<BenchmarkItem> reader = new MyBatisPagingItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectPageAfter")
+        .pageSize(pageSize).sortKeyConverter(BenchmarkItem::getId).saveState(false).build();
+    readAll(reader, blackhole);
+  }
+
+  @Benchmark
+  public void prefetchingPagingReader(Blackhole blackhole) throws Exception {
+    MyBatisPagingItemReader<BenchmarkItem> reader = new MyBatisPagingItemReaderBuilder<BenchmarkItem>()
+        .sqlSessionFactory(sqlSessionFactory).queryId(BenchmarkDatabase.NAMESPACE + ".selectPageAfter")
+        .pageSize(pageSize).sortKeyConverter(BenchmarkItem::getId).prefetchPages(2).taskExecutor(taskExecutor)
+        .saveState(false).build();
+    readAll(reader, blackhole);
+  }
+
+  private ExecutionContext restartContext(String readCountKey, String lastKeyKey, Object lastKey) {
+    // 重启时已经读取了一半的行，ID从1开始连续递增，所以最后读取的ID就是rows / 2
+    ExecutionContext executionContext = new ExecutionContext();
+    executionContext.putInt(readCountKey, rows / 2);
+    if (lastKeyKey != null) {
+      executionContext.put(lastKeyKey, lastKey);
+    }
+    return executionContext;
+  }
+
+  private static void readAll(ItemStreamReader<BenchmarkItem> reader, Blackhole blackhole) throws Exception {
+    readAll(reader, new ExecutionContext(), blackhole);
+  }
+
+  private static void readAll(ItemStreamReader<BenchmarkItem> reader, ExecutionContext executionContext,
+      Blackhole blackhole) throws Exception {
+    reader.open(executionContext);
+    try {
+      BenchmarkItem item;
+      while ((item = reader.read()) != null) {
+        blackhole.consume(item);
+      }
+    } finally {
+      reader.close();
+    }
+  }
+
+}
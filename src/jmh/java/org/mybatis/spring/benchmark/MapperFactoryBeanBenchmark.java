@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+/**
+ * Measures a statement run through the mapper proxy returned by {@link MapperFactoryBean#getObject()} compared with
+ * the same statement run on the {@code SqlSessionTemplate} directly, and the cost of {@code getObject()} itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperFactoryBeanBenchmark {
+
+  private EmbeddedDatabase database;
+
+  private MapperFactoryBean<BenchmarkMapper> mapperFactoryBean;
+
+  private BenchmarkMapper mapper;
+
+  private SqlSessionTemplate template;
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(1000);
+    SqlSessionFactory sqlSessionFactory = BenchmarkDatabase.sqlSessionFactory(database);
+    mapperFactoryBean = new MapperFactoryBean<>(BenchmarkMapper.class);
+    mapperFactoryBean.setSqlSessionFactory(sqlSessionFactory);
+    mapperFactoryBean.afterPropertiesSet();
+    mapper = mapperFactoryBean.getObject();
+    template = new SqlSessionTemplate(sqlSessionFactory);
+  }
+
+  @TearDown
+  public void tearDown() {
+    database.shutdown();
+  }
+
+  @Benchmark
+  public Object getObject() throws Exception {
+    return mapperFactoryBean.getObject();
+  }
+
+  @Benchmark
+  public BenchmarkItem mapperProxySelectById() {
+    return mapper.selectById(42);
+  }
+
+  @Benchmark
+  public BenchmarkItem templateSelectById() {
+    return template.selectOne(BenchmarkDatabase.NAMESPACE + ".selectById", 42);
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+/**
+ * Measures the startup cost of {@link SqlSessionFactoryBean}, i.e. {@code buildSqlSessionFactory()}, by number of
+ * mapper files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlSessionFactoryBeanBenchmark {
+
+  @Param({ "10", "100", "500" })
+  public int mapperCount;
+
+  private EmbeddedDatabase database;
+
+  private Resource[] mapperLocations;
+
+  @Setup
+  public void setup() {
+    database = BenchmarkDatabase.create(0);
+    mapperLocations = new Resource[mapperCount];
+    for (int i = 0; i < mapperCount; i++) {
+      mapperLocations[i] = BenchmarkDatabase.mapperXml("org.mybatis.spring.benchmark.generated.Mapper" + i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    database.shutdown();
+  }
+
+  @Benchmark
+  public SqlSessionFactory buildSqlSessionFactory() throws Exception {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(database);
+    factoryBean.setMapperLocations(mapperLocations);
+    return factoryBean.getObject();
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import static org.apache.ibatis.reflection.ExceptionUtil.unwrapThrowable;
+import static org.mybatis.spring.SqlSessionUtils.closeSqlSession;
+import static org.mybatis.spring.SqlSessionUtils.getSqlSession;
+import static org.mybatis.spring.SqlSessionUtils.isSqlSessionTransactional;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.MyBatisExceptionTranslator;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Measures the call overhead of {@link SqlSessionTemplate}: its direct dispatch compared with the JDK reflective proxy
+ * it used before, and a call made outside of a Spring transaction compared with one made inside its own transaction.
+ * <p>
+ * {@code clearCache} does not touch the database, so it isolates the per-call overhead of the template itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlSessionTemplateBenchmark {
+
+  private static final String SELECT_BY_ID = BenchmarkDatabase.NAMESPACE + ".selectById";
+
+  private EmbeddedDatabase database;
+
+  private SqlSessionTemplate template;
+
+  private SqlSession reflectiveProxy;
+
+  private TransactionTemplate transactionTemplate;
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(1000);
+    SqlSessionFactory sqlSessionFactory = BenchmarkDatabase.sqlSessionFactory(database);
+    template = new SqlSessionTemplate(sqlSessionFactory);
+    reflectiveProxy = (SqlSession) Proxy.newProxyInstance(SqlSessionFactory.class.getClassLoader(),
+        new Class[] { SqlSession.class }, new ReflectiveSqlSessionInterceptor(sqlSessionFactory,
+            ExecutorType.SIMPLE, new MyBatisExceptionTranslator(database, true)));
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+  }
+
+  @TearDown
+  public void tearDown() {
+    database.shutdown();
+  }
+
+  @Benchmark
+  public void directDispatchNoStatement() {
+    template.clearCache();
+  }
+
+  @Benchmark
+  public void reflectiveProxyNoStatement() {
+    reflectiveProxy.clearCache();
+  }
+
+  @Benchmark
+  public Object directDispatchSelectOne() {
+    return template.selectOne(SELECT_BY_ID, 42);
+  }
+
+  @Benchmark
+  public Object reflectiveProxySelectOne() {
+    return reflectiveProxy.selectOne(SELECT_BY_ID, 42);
+  }
+
+  @Benchmark
+  public Object transactionalSelectOne() {
+    return transactionTemplate.execute(status -> template.selectOne(SELECT_BY_ID, 42));
+  }
+
+  /**
+   * Copy of the reflective {@code InvocationHandler} that {@code SqlSessionTemplate} used to route calls with, kept as
+   * the baseline of the comparison.
+   */
+  private static class ReflectiveSqlSessionInterceptor implements InvocationHandler {
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    private final ExecutorType executorType;
+
+    private final PersistenceExceptionTranslator exceptionTranslator;
+
+    ReflectiveSqlSessionInterceptor(SqlSessionFactory sqlSessionFactory, ExecutorType executorType,
+        PersistenceExceptionTranslator exceptionTranslator) {
+      this.sqlSessionFactory = sqlSessionFactory;
+      this.executorType = executorType;
+      this.exceptionTranslator = exceptionTranslator;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      SqlSession sqlSession = getSqlSession(this.sqlSessionFactory, this.executorType, this.exceptionTranslator);
+      try {
+        Object result = method.invoke(sqlSession, args);
+        if (!isSqlSessionTransactional(sqlSession, this.sqlSessionFactory)) {
+          sqlSession.commit(true);
+        }
+        return result;
+      } catch (Throwable t) {
+        Throwable unwrapped = unwrapThrowable(t);
+        if (this.exceptionTranslator != null && unwrapped instanceof PersistenceException) {
+          closeSqlSession(sqlSession, this.sqlSessionFactory);
+          sqlSession = null;
+          Throwable translated = this.exceptionTranslator
+              .translateExceptionIfPossible((PersistenceException) unwrapped);
+          if (translated != null) {
+            unwrapped = translated;
+          }
+        }
+        throw unwrapped;
+      } finally {
+        if (sqlSession != null) {
+          closeSqlSession(sqlSession, this.sqlSessionFactory);
+        }
+      }
+    }
+  }
+
+}
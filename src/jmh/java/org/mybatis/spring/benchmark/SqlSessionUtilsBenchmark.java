@@ -0,0 +1,93 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionContext;
+import org.mybatis.spring.SqlSessionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+/**
+ * Measures the per-statement session bookkeeping done inside a Spring transaction: resolving the transactional
+ * {@code SqlSession}, checking whether it is transactional and releasing it. The statement itself is left out so the
+ * {@code TransactionSynchronizationManager} lookups dominate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlSessionUtilsBenchmark {
+
+  private EmbeddedDatabase database;
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  private DataSourceTransactionManager transactionManager;
+
+  private TransactionStatus transaction;
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(1);
+    sqlSessionFactory = BenchmarkDatabase.sqlSessionFactory(database);
+    transactionManager = new DataSourceTransactionManager(database);
+    // JMH runs thread scoped setup on the benchmark thread, so the transaction is bound to it
+    transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+  }
+
+  @TearDown
+  public void tearDown() {
+    transactionManager.rollback(transaction);
+    database.shutdown();
+  }
+
+  @Benchmark
+  public boolean lookupPerStep() {
+    SqlSession sqlSession = SqlSessionUtils.getSqlSession(sqlSessionFactory, ExecutorType.SIMPLE, null);
+    boolean transactional = SqlSessionUtils.isSqlSessionTransactional(sqlSession, sqlSessionFactory);
+    SqlSessionUtils.closeSqlSession(sqlSession, sqlSessionFactory);
+    return transactional;
+  }
+
+  @Benchmark
+  public boolean lookupOnce() {
+    SqlSessionContext context = SqlSessionUtils.getSqlSessionContext(sqlSessionFactory, ExecutorType.SIMPLE, null);
+    boolean transactional = context.isSqlSessionTransactional();
+    context.release();
+    return transactional;
+  }
+
+}
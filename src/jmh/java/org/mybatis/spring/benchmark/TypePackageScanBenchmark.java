@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.benchmark;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+/**
+ * Measures a cold {@code typeAliasesPackage}/{@code typeHandlersPackage} scan of a large package with few candidates,
+ * and counts the classes loaded by it.
+ * <p>
+ * Classes are loaded once per JVM, so every fork measures a single build after a warm-up build without packages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+public class TypePackageScanBenchmark {
+
+  private static final String SCANNED_PACKAGE = "org.springframework.jdbc";
+
+  private static final ClassLoadingMXBean CLASS_LOADING = ManagementFactory.getClassLoadingMXBean();
+
+  private EmbeddedDatabase database;
+
+  /**
+   * Number of classes loaded while building the {@code SqlSessionFactory}, reported next to the score.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class LoadedClasses {
+
+    public long loadedClasses;
+
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    database = BenchmarkDatabase.create(0);
+    newFactoryBean().getObject();
+  }
+
+  @TearDown
+  public void tearDown() {
+    database.shutdown();
+  }
+
+  @Benchmark
+  public SqlSessionFactory scanTypeHandlersPackage(LoadedClasses counter) throws Exception {
+    SqlSessionFactoryBean factoryBean = newFactoryBean();
+    factoryBean.setTypeHandlersPackage(SCANNED_PACKAGE);
+    return build(factoryBean, counter);
+  }
+
+  @Benchmark
+  public SqlSessionFactory scanTypeAliasesPackageWithSuperType(LoadedClasses counter) throws Exception {
+    SqlSessionFactoryBean factoryBean = newFactoryBean();
+    factoryBean.setTypeAliasesPackage(SCANNED_PACKAGE);
+    factoryBean.setTypeAliasesSuperType(BenchmarkItem.class);
+    return build(factoryBean, counter);
+  }
+
+  private SqlSessionFactoryBean newFactoryBean() {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(database);
+    return factoryBean;
+  }
+
+  private static SqlSessionFactory build(SqlSessionFactoryBean factoryBean, LoadedClasses counter) throws Exception {
+    long before = CLASS_LOADING.getTotalLoadedClassCount();
+    SqlSessionFactory sqlSessionFactory = factoryBean.getObject();
+    counter.loadedClasses += CLASS_LOADING.getTotalLoadedClassCount() - before;
+    return sqlSessionFactory;
+  }
+
+}
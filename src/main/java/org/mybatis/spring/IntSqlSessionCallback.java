@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * Callback for the insert, update and delete operations of a {@code SqlSessionTemplate}. It returns the update count
+ * as a primitive, so it is never boxed, and it gets the statement and its parameter as arguments, so the operations
+ * are non-capturing method references instead of a new lambda per call.
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionCallback
+ */
+@FunctionalInterface
+interface IntSqlSessionCallback {
+
+  /**
+   * Runs a statement against the given {@code SqlSession}.
+   *
+   * @param sqlSession
+   *          the session resolved for the current call
+   * @param statement
+   *          the insert, update or delete statement
+   * @param parameter
+   *          the parameter object of the statement, or {@code null}
+   *
+   * @return the number of rows affected
+   */
+  int doInSqlSession(SqlSession sqlSession, String statement, Object parameter);
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SqlSessionMetrics} publishing to a Micrometer {@code MeterRegistry}:
+ * <ul>
+ * <li>{@code mybatis.statement}: a timer with a percentile histogram per mapped statement, tagged with
+ * {@code statement}.</li>
+ * <li>{@code mybatis.statement.errors}: a counter of failed statements, tagged with {@code statement} and the simple
+ * class name of the exception or error thrown to the caller, after translation, as {@code exception}, e.g.
+ * {@code DuplicateKeyException}.</li>
+ * <li>{@code mybatis.session.acquired}: a counter of the resolved sessions, tagged with {@code transactional} and
+ * {@code reused}, which tells the sessions bound to a Spring transaction or taken from a {@link SqlSessionPool} from
+ * the ones opened for a single call.</li>
+ * </ul>
+ * Only the first {@code maxStatements} statement ids get their own {@code statement} tag, the statements executed
+ * after them are all recorded as {@code other}, so a large or generated set of mapped statements cannot grow the
+ * number of meters without limit.
+ * <p>
+ * Micrometer is an optional dependency, only this class refers to it.
+ *
+ * <pre class="code">
+ * SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory);
+ * sqlSessionTemplate.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(meterRegistry));
+ * </pre>
+ *
+ * @since 3.0.4
+ */
+public class MicrometerSqlSessionMetrics implements SqlSessionMetrics {
+
+  /**
+   * The name of the statement timer.
+   */
+  public static final String STATEMENT_METRIC = "mybatis.statement";
+
+  /**
+   * The name of the statement error counter.
+   */
+  public static final String STATEMENT_ERRORS_METRIC = "mybatis.statement.errors";
+
+  /**
+   * The name of the session acquisition counter.
+   */
+  public static final String SESSION_ACQUIRED_METRIC = "mybatis.session.acquired";
+
+  /**
+   * The {@code statement} tag of the statements executed once {@code maxStatements} statements are tagged.
+   */
+  public static final String OTHER_STATEMENTS = "other";
+
+  private static final int DEFAULT_MAX_STATEMENTS = 500;
+
+  private final MeterRegistry registry;
+
+  private final Tags tags;
+
+  private final int maxStatements;
+
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+  private final Map<String, Counter> errorCounters = new ConcurrentHashMap<>();
+
+  // 下标为 transactional * 2 + reused
+  private final Counter[] sessionCounters = new Counter[4];
+
+  /**
+   * Creates the metrics with no extra tags, tagging at most 500 statements.
+   *
+   * @param registry
+   *          the registry the meters are registered to
+   */
+  public MicrometerSqlSessionMetrics(MeterRegistry registry) {
+    this(registry, Tags.empty(), DEFAULT_MAX_STATEMENTS);
+  }
+
+  /**
+   * Creates the metrics.
+   *
+   * @param registry
+   *          the registry the meters are registered to
+   * @param tags
+   *          the tags added to every meter, e.g. the name of the {@code SqlSessionFactory} when several are used
+   * @param maxStatements
+   *          the number of statement ids that get their own {@code statement} tag
+   */
+  public MicrometerSqlSessionMetrics(MeterRegistry registry, Iterable<Tag> tags, int maxStatements) {
+    notNull(registry, "Property 'registry' is required");
+    isTrue(maxStatements > 0, "Property 'maxStatements' must be greater than 0");
+    this.registry = registry;
+    this.tags = Tags.of(tags);
+    this.maxStatements = maxStatements;
+    for (int i = 0; i < this.sessionCounters.length; i++) {
+      this.sessionCounters[i] = Counter.builder(SESSION_ACQUIRED_METRIC)
+          .description("The SqlSessions resolved by SqlSessionTemplate").tags(this.tags)
+          .tag("transactional", String.valueOf(i >= 2)).tag("reused", String.valueOf(i % 2 == 1))
+          .register(registry);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void sessionAcquired(boolean transactional, boolean reused) {
+    this.sessionCounters[(transactional ? 2 : 0) + (reused ? 1 : 0)].increment();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void statementExecuted(String statement, long durationNanos, Throwable exception) {
+    String statementTag = statementTag(statement);
+    this.timers.computeIfAbsent(statementTag, this::registerTimer).record(durationNanos, TimeUnit.NANOSECONDS);
+    if (exception != null) {
+      String exceptionTag = exception.getClass().getSimpleName();
+      this.errorCounters.computeIfAbsent(statementTag + ' ' + exceptionTag,
+          key -> registerErrorCounter(statementTag, exceptionTag)).increment();
+    }
+  }
+
+  private String statementTag(String statement) {
+    // 在上限内才给新的statement单独打标签，并发时可能略微超过上限
+    if (this.timers.containsKey(statement) || this.timers.size() < this.maxStatements) {
+      return statement;
+    }
+    return OTHER_STATEMENTS;
+  }
+
+  private Timer registerTimer(String statementTag) {
+    return Timer.builder(STATEMENT_METRIC).description("The execution time of the MyBatis mapped statements")
+        .tags(this.tags).tag("statement", statementTag).publishPercentileHistogram().register(this.registry);
+  }
+
+  private Counter registerErrorCounter(String statementTag, String exceptionTag) {
+    return Counter.builder(STATEMENT_ERRORS_METRIC).description("The MyBatis mapped statements that failed")
+        .tags(this.tags).tag("statement", statementTag).tag("exception", exceptionTag).register(this.registry);
+  }
+
+}
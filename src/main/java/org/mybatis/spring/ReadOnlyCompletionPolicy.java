@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+/**
+ * How a {@code SqlSessionTemplate} completes a session that is not managed by Spring after a call that only ran a
+ * select statement. Calls that may have written are always force committed.
+ * <p>
+ * A call is read-only when it is one of the {@code select} methods of the template and its statement is not a dirty
+ * select (declared with {@code affectData="true"}). What the statement actually does is not tracked, so a select that
+ * calls a function or a procedure with side effects must be declared as a dirty select.
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionTemplate#setReadOnlyCompletionPolicy(ReadOnlyCompletionPolicy)
+ */
+public enum ReadOnlyCompletionPolicy {
+
+  /**
+   * Force commits the session, so the JDBC connection is committed even if nothing was written. This is the default
+   * because some databases require a commit or rollback before the connection is closed.
+   */
+  COMMIT,
+
+  /**
+   * Rolls the JDBC connection back instead of committing it. 2nd level cache entries are still published.
+   */
+  ROLLBACK,
+
+  /**
+   * Does not commit nor roll back the JDBC connection before it is closed. 2nd level cache entries are still published.
+   * This saves a database round trip per read.
+   * <p>
+   * <b>Only use it when the connections are in auto-commit mode, or when the driver or the connection pool completes
+   * the open transaction of a returned connection.</b> Otherwise the local transaction of the select is still open
+   * when the connection is closed, and depending on the driver the close fails (e.g. Derby throws "Cannot close a
+   * connection while a transaction is still active") or the transaction is implicitly committed.
+   */
+  NONE
+
+}
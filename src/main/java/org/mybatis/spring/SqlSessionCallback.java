@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * Callback for running one or more statements against the {@code SqlSession} resolved by a
+ * {@code SqlSessionTemplate}. The session must not be committed, rolled back or closed by the callback, the template
+ * takes care of its life-cycle.
+ *
+ * @param <T>
+ *          the result type
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionTemplate#execute(SqlSessionCallback)
+ */
+@FunctionalInterface
+public interface SqlSessionCallback<T> {
+
+  /**
+   * Runs statements against the given {@code SqlSession}.
+   *
+   * @param sqlSession
+   *          the session resolved for the current call
+   *
+   * @return a result object, or {@code null} if none
+   */
+  T doInSqlSession(SqlSession sqlSession);
+
+}
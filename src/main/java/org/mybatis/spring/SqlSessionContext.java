@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.logging.Logger;
+import org.mybatis.logging.LoggerFactory;
+
+/**
+ * A {@code SqlSession} resolved once by {@link SqlSessionUtils#getSqlSessionContext} together with the
+ * {@code SqlSessionHolder} it was resolved from, if any. It carries the outcome of the single
+ * {@code TransactionSynchronizationManager} lookup through the whole call, so checking whether the session is
+ * transactional and releasing it do not look the holder up again.
+ * <p>
+ * A context is meant to be used by one thread for the duration of one unit of work. Only its first release has an
+ * effect.
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionTemplate#execute(SqlSessionCallback)
+ */
+public final class SqlSessionContext {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SqlSessionContext.class);
+
+  private final SqlSession sqlSession;
+
+  private final SqlSessionHolder holder;
+
+  private final boolean reused;
+
+  private boolean released;
+
+  SqlSessionContext(SqlSession sqlSession, SqlSessionHolder holder, boolean reused) {
+    this.sqlSession = sqlSession;
+    this.holder = holder;
+    this.reused = reused;
+  }
+
+  public SqlSession getSqlSession() {
+    return this.sqlSession;
+  }
+
+  /**
+   * Returns if the resolved {@code SqlSession} is being managed by Spring.
+   *
+   * @return true if session is transactional, otherwise false
+   */
+  public boolean isSqlSessionTransactional() {
+    return this.holder != null;
+  }
+
+  /**
+   * Returns if the resolved {@code SqlSession} was already bound to the current Spring transaction by a previous call,
+   * or was an idle session of a {@link SqlSessionPool}, instead of being opened for this one.
+   *
+   * @return true if an existing session was reused, otherwise false
+   */
+  public boolean isSqlSessionReused() {
+    return this.reused;
+  }
+
+  /**
+   * Releases the resolved {@code SqlSession}. A transactional session just has its reference counter updated and is
+   * closed by Spring when the managed transaction ends, any other session is closed. Releasing the session again does
+   * nothing.
+   */
+  public void release() {
+    if (this.released) {
+      return;
+    }
+    this.released = true;
+    if (this.holder != null) {
+      LOGGER.debug(() -> "Releasing transactional SqlSession [" + this.sqlSession + "]");
+      this.holder.released();
+    } else {
+      LOGGER.debug(() -> "Closing non transactional SqlSession [" + this.sqlSession + "]");
+      this.sqlSession.close();
+    }
+  }
+
+}
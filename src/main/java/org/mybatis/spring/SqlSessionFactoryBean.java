@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,17 +21,30 @@ import static org.springframework.util.ObjectUtils.isEmpty;
 import static org.springframework.util.StringUtils.hasLength;
 import static org.springframework.util.StringUtils.tokenizeToStringArray;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.sql.DataSource;
@@ -55,6 +68,10 @@ import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.TypeHandler;
 import org.mybatis.logging.Logger;
 import org.mybatis.logging.LoggerFactory;
+import org.mybatis.spring.cache.SpringCache;
+import org.mybatis.spring.cache.SpringCacheProvider;
+import org.mybatis.spring.index.ClassIndexProcessor;
+import org.mybatis.spring.transaction.ReadWriteRoutingInterceptor;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -66,9 +83,15 @@ import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.core.type.ClassMetadata;
 import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
 import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.PathMatcher;
 
 /**
  * {@code FactoryBean} that creates a MyBatis {@code SqlSessionFactory}. This is the usual way to set up a shared
@@ -105,6 +128,16 @@ public class SqlSessionFactoryBean
 
   private static final ResourcePatternResolver RESOURCE_PATTERN_RESOLVER = new PathMatchingResourcePatternResolver();
   private static final MetadataReaderFactory METADATA_READER_FACTORY = new CachingMetadataReaderFactory();
+  private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+  /**
+   * The location of the class index files written by {@link ClassIndexProcessor}, to pass to
+   * {@link #setClassIndexLocation(String)}.
+   *
+   * @since 3.0.4
+   */
+  public static final String CLASS_INDEX_LOCATION = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+      + ClassIndexProcessor.INDEX_PATH;
 
   private Resource configLocation;
 
@@ -115,6 +148,8 @@ public class SqlSessionFactoryBean
 
   private DataSource dataSource;
 
+  private DataSource readDataSource;
+
   private TransactionFactory transactionFactory;
 
   private Properties configurationProperties;
@@ -154,10 +189,21 @@ public class SqlSessionFactoryBean
 
   private Cache cache;
 
+  private SpringCacheProvider cacheProvider;
+
   private ObjectFactory objectFactory;
 
   private ObjectWrapperFactory objectWrapperFactory;
 
+  private int mapperParsingParallelism = 1;
+
+  private String classIndexLocation;
+
+  // 解析后的类索引，typeAliasesPackage和typeHandlersPackage共用，只读取一次
+  private Set<String> classIndex;
+
+  private boolean classIndexLoaded;
+
   /**
    * Sets the ObjectFactory.
    *
@@ -243,6 +289,30 @@ public class SqlSessionFactoryBean
     this.cache = cache;
   }
 
+  /**
+   * Gets the SpringCacheProvider.
+   *
+   * @return a specified SpringCacheProvider
+   *
+   * @since 3.0.4
+   */
+  public SpringCacheProvider getCacheProvider() {
+    return this.cacheProvider;
+  }
+
+  /**
+   * Sets the provider of the Spring cache regions used by the namespaces that declare a {@link SpringCache}. Every
+   * namespace with a cache parsed while building the {@code SqlSessionFactory} is bound to it.
+   *
+   * @param cacheProvider
+   *          a SpringCacheProvider
+   *
+   * @since 3.0.4
+   */
+  public void setCacheProvider(SpringCacheProvider cacheProvider) {
+    this.cacheProvider = cacheProvider;
+  }
+
   /**
    * Mybatis plugin list.
    *
@@ -346,6 +416,45 @@ public class SqlSessionFactoryBean
     this.failFast = failFast;
   }
 
+  /**
+   * Sets the number of threads used to read and validate the {@code mapperLocations} files. Defaults to 1, which parses
+   * them one after another on the calling thread.
+   * <p>
+   * With a greater value the XML documents are loaded concurrently on a pool of up to that many threads, which is
+   * shut down once the {@code SqlSessionFactory} is built. Their statements, result maps and fragments are still
+   * registered into the {@code Configuration} one file at a time, in the order of {@code mapperLocations}, so
+   * references across files are resolved exactly as with sequential parsing.
+   *
+   * @param mapperParsingParallelism
+   *          the maximum number of threads that parse mapper files
+   *
+   * @since 3.0.4
+   */
+  public void setMapperParsingParallelism(int mapperParsingParallelism) {
+    this.mapperParsingParallelism = mapperParsingParallelism;
+  }
+
+  /**
+   * Sets the location of the class index used to resolve {@code typeAliasesPackage} and {@code typeHandlersPackage}
+   * instead of scanning the classpath. The index is not used by default.
+   * <p>
+   * An index file lists one fully qualified class name per line; blank lines and lines starting with {@code #} are
+   * ignored. It is generated at build time by {@link ClassIndexProcessor}, usually at {@value #CLASS_INDEX_LOCATION}.
+   * Once any file is found at this location, the index is trusted to list every class of the scanned packages, so a
+   * class left out of it is not registered. When none is found, or the location is {@code null}, the packages are
+   * scanned from the classpath as before.
+   *
+   * @param classIndexLocation
+   *          a resource pattern of the class index files
+   *
+   * @since 3.0.4
+   */
+  public void setClassIndexLocation(String classIndexLocation) {
+    this.classIndexLocation = classIndexLocation;
+    this.classIndex = null;
+    this.classIndexLoaded = false;
+  }
+
   /**
    * Set the location of the MyBatis {@code SqlSessionFactory} config file. A typical value is
    * "WEB-INF/mybatis-configuration.xml".
@@ -409,6 +518,9 @@ public class SqlSessionFactoryBean
    * {@code TransactionAwareDataSourceProxy}, while the transaction manager needs to work on the underlying target
    * {@code DataSource}. If there's nevertheless a {@code TransactionAwareDataSourceProxy} passed in, it will be
    * unwrapped to extract its target {@code DataSource}.
+   * <p>
+   * To get a {@code Connection} from the pool only when a statement is actually executed, e.g. when the reads of a
+   * transaction hit the cache, pass the same {@code LazyConnectionDataSourceProxy} here and to the transaction manager.
    *
    * @param dataSource
    *          a JDBC {@code DataSource}
@@ -425,6 +537,29 @@ public class SqlSessionFactoryBean
     }
   }
 
+  /**
+   * Set the JDBC {@code DataSource} of a replica. Outside a read-write transaction, the {@code SELECT} statements use
+   * it instead of the {@code DataSource} of the environment, until a write is executed with the same
+   * {@code SqlSession}.
+   * <p>
+   * It requires the default {@code SpringManagedTransactionFactory}, and registers a
+   * {@link ReadWriteRoutingInterceptor} that routes the statements.
+   *
+   * @param readDataSource
+   *          a JDBC {@code DataSource}
+   *
+   * @see org.mybatis.spring.transaction.ReadFromPrimary
+   *
+   * @since 3.0.4
+   */
+  public void setReadDataSource(DataSource readDataSource) {
+    if (readDataSource instanceof TransactionAwareDataSourceProxy) {
+      this.readDataSource = ((TransactionAwareDataSourceProxy) readDataSource).getTargetDataSource();
+    } else {
+      this.readDataSource = readDataSource;
+    }
+  }
+
   /**
    * Sets the {@code SqlSessionFactoryBuilder} to use when creating the {@code SqlSessionFactory}.
    * <p>
@@ -630,7 +765,8 @@ public class SqlSessionFactoryBean
 
     // 解析类型别名包
     if (hasLength(this.typeAliasesPackage)) {
-      scanClasses(this.typeAliasesPackage, this.typeAliasesSuperType).stream()
+      scanClasses(this.typeAliasesPackage, this.typeAliasesSuperType,
+          metadata -> !metadata.isInterface() && !isMemberClass(metadata)).stream()
           .filter(clazz -> !clazz.isAnonymousClass()).filter(clazz -> !clazz.isInterface())
           .filter(clazz -> !clazz.isMemberClass()).forEach(targetConfiguration.getTypeAliasRegistry()::registerAlias);
     }
@@ -653,7 +789,8 @@ public class SqlSessionFactoryBean
 
     // 解析类型处理器包
     if (hasLength(this.typeHandlersPackage)) {
-      scanClasses(this.typeHandlersPackage, TypeHandler.class).stream().filter(clazz -> !clazz.isAnonymousClass())
+      scanClasses(this.typeHandlersPackage, TypeHandler.class, metadata -> !metadata.isAbstract()).stream()
+          .filter(clazz -> !clazz.isAnonymousClass())
           .filter(clazz -> !clazz.isInterface()).filter(clazz -> !Modifier.isAbstract(clazz.getModifiers()))
           .forEach(targetConfiguration.getTypeHandlerRegistry()::register);
     }
@@ -701,14 +838,28 @@ public class SqlSessionFactoryBean
 
     // 设置环境数据源
     // 同时设置事务工厂，如果为空，默认使用SpringManagedTransactionFactory，spring-jdbc事务管理
-    targetConfiguration.setEnvironment(new Environment(this.environment,
-        this.transactionFactory == null ? new SpringManagedTransactionFactory() : this.transactionFactory,
-        this.dataSource));
+    TransactionFactory targetTransactionFactory = this.transactionFactory == null
+        ? new SpringManagedTransactionFactory() : this.transactionFactory;
+    if (this.readDataSource != null) {
+      state(targetTransactionFactory instanceof SpringManagedTransactionFactory,
+          "Property 'readDataSource' requires a SpringManagedTransactionFactory");
+      ((SpringManagedTransactionFactory) targetTransactionFactory).setReadDataSource(this.readDataSource);
+    }
+    targetConfiguration.setEnvironment(new Environment(this.environment, targetTransactionFactory, this.dataSource));
+
+    // 配置了读库时，注册按语句类型路由连接的插件
+    if (targetTransactionFactory instanceof SpringManagedTransactionFactory
+        && ((SpringManagedTransactionFactory) targetTransactionFactory).getReadDataSource() != null
+        && targetConfiguration.getInterceptors().stream().noneMatch(ReadWriteRoutingInterceptor.class::isInstance)) {
+      targetConfiguration.addInterceptor(new ReadWriteRoutingInterceptor());
+    }
 
     // 需要扫描的mapper的xml文件
     if (this.mapperLocations != null) {
       if (this.mapperLocations.length == 0) {
         LOGGER.warn(() -> "Property 'mapperLocations' was specified but matching resources are not found.");
+      } else if (this.mapperParsingParallelism > 1 && this.mapperLocations.length > 1) {
+        parseMapperLocationsInParallel(targetConfiguration);
       } else {
         for (Resource mapperLocation : this.mapperLocations) {
           if (mapperLocation == null) {
@@ -732,6 +883,10 @@ public class SqlSessionFactoryBean
       LOGGER.debug(() -> "Property 'mapperLocations' was not specified.");
     }
 
+    if (this.cacheProvider != null) {
+      targetConfiguration.getCaches().forEach(this.cacheProvider::bind);
+    }
+
     // 通过configuration创建sqlSessionFactory
     return this.sqlSessionFactoryBuilder.build(targetConfiguration);
   }
@@ -776,26 +931,152 @@ public class SqlSessionFactoryBean
     }
   }
 
-  private Set<Class<?>> scanClasses(String packagePatterns, Class<?> assignableType) throws IOException {
+  private void parseMapperLocationsInParallel(Configuration targetConfiguration) throws IOException {
+    List<Resource> resources = Stream.of(this.mapperLocations).filter(Objects::nonNull).collect(Collectors.toList());
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.mapperParsingParallelism, resources.size()),
+        new CustomizableThreadFactory("mybatis-mapper-parser-"));
+    try {
+      // XMLMapperBuilder reads and validates the whole document in its constructor without touching the
+      // Configuration, so only this part runs concurrently
+      List<Future<XMLMapperBuilder>> builders = new ArrayList<>(resources.size());
+      for (Resource mapperLocation : resources) {
+        builders.add(executor.submit(() -> {
+          try (InputStream inputStream = mapperLocation.getInputStream()) {
+            return new XMLMapperBuilder(inputStream, targetConfiguration, mapperLocation.toString(),
+                targetConfiguration.getSqlFragments());
+          } finally {
+            ErrorContext.instance().reset();
+          }
+        }));
+      }
+      // 按mapperLocations的顺序注册，跨文件的include/resultMap引用和顺序解析时一样由MyBatis的incomplete机制处理
+      for (int i = 0; i < resources.size(); i++) {
+        Resource mapperLocation = resources.get(i);
+        try {
+          builders.get(i).get().parse();
+          builders.set(i, null);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while parsing mapping resource: '" + mapperLocation + "'", e);
+        } catch (ExecutionException e) {
+          throw new IOException("Failed to parse mapping resource: '" + mapperLocation + "'", e.getCause());
+        } catch (Exception e) {
+          throw new IOException("Failed to parse mapping resource: '" + mapperLocation + "'", e);
+        } finally {
+          ErrorContext.instance().reset();
+        }
+        LOGGER.debug(() -> "Parsed mapper file: '" + mapperLocation + "'");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Set<Class<?>> scanClasses(String packagePatterns, Class<?> assignableType,
+      Predicate<ClassMetadata> metadataFilter) throws IOException {
+    Set<String> classIndex = loadClassIndex();
+    TypeFilter assignableFilter = assignableType == null ? null : new AssignableTypeFilter(assignableType);
     Set<Class<?>> classes = new HashSet<>();
     String[] packagePatternArray = tokenizeToStringArray(packagePatterns,
         ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS);
     for (String packagePattern : packagePatternArray) {
-      Resource[] resources = RESOURCE_PATTERN_RESOLVER.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
-          + ClassUtils.convertClassNameToResourcePath(packagePattern) + "/**/*.class");
-      for (Resource resource : resources) {
-        try {
-          ClassMetadata classMetadata = METADATA_READER_FACTORY.getMetadataReader(resource).getClassMetadata();
-          Class<?> clazz = Resources.classForName(classMetadata.getClassName());
-          if (assignableType == null || assignableType.isAssignableFrom(clazz)) {
-            classes.add(clazz);
+      long start = System.nanoTime();
+      String classPattern = ClassUtils.convertClassNameToResourcePath(packagePattern) + "/**/*.class";
+      int candidates = 0;
+      int loaded = 0;
+      if (classIndex != null) {
+        for (String className : classIndex) {
+          if (PATH_MATCHER.match(classPattern,
+              ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX)) {
+            candidates++;
+            try {
+              Class<?> clazz = loadCandidate(METADATA_READER_FACTORY.getMetadataReader(className), assignableFilter,
+                  metadataFilter);
+              if (clazz != null) {
+                loaded++;
+                classes.add(clazz);
+              }
+            } catch (Throwable e) {
+              LOGGER.warn(() -> "Cannot load the '" + className + "' listed in the class index, the index may be stale"
+                  + " and a clean build regenerates it. Cause by " + e.toString());
+            }
+          }
+        }
+      } else {
+        Resource[] resources = RESOURCE_PATTERN_RESOLVER
+            .getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + classPattern);
+        for (Resource resource : resources) {
+          candidates++;
+          try {
+            Class<?> clazz = loadCandidate(METADATA_READER_FACTORY.getMetadataReader(resource), assignableFilter,
+                metadataFilter);
+            if (clazz != null) {
+              loaded++;
+              classes.add(clazz);
+            }
+          } catch (Throwable e) {
+            LOGGER.warn(() -> "Cannot load the '" + resource + "'. Cause by " + e.toString());
           }
-        } catch (Throwable e) {
-          LOGGER.warn(() -> "Cannot load the '" + resource + "'. Cause by " + e.toString());
         }
       }
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      int scanned = candidates;
+      int matched = loaded;
+      LOGGER.debug(() -> "Scanned " + scanned + " classes of package '" + packagePattern + "' from the "
+          + (classIndex != null ? "class index" : "classpath") + " in " + elapsed + " ms, loaded " + matched);
     }
     return classes;
   }
 
+  private static Class<?> loadCandidate(MetadataReader metadataReader, TypeFilter assignableFilter,
+      Predicate<ClassMetadata> metadataFilter) throws IOException, ClassNotFoundException {
+    // 先用字节码的元数据(ASM)过滤接口、抽象类、内部类以及类型不匹配的类，只有真正的候选类才会被加载
+    ClassMetadata classMetadata = metadataReader.getClassMetadata();
+    if (!metadataFilter.test(classMetadata)
+        || (assignableFilter != null && !assignableFilter.match(metadataReader, METADATA_READER_FACTORY))) {
+      return null;
+    }
+    return Resources.classForName(classMetadata.getClassName());
+  }
+
+  /**
+   * Same as {@code Class#isMemberClass()} on the bytecode metadata. {@code ClassMetadata#hasEnclosingClass()} is also
+   * true for the local and anonymous classes, so the member classes of the enclosing class are checked.
+   */
+  private static boolean isMemberClass(ClassMetadata classMetadata) {
+    if (!classMetadata.hasEnclosingClass()) {
+      return false;
+    }
+    try {
+      ClassMetadata enclosingClassMetadata = METADATA_READER_FACTORY
+          .getMetadataReader(classMetadata.getEnclosingClassName()).getClassMetadata();
+      return Arrays.asList(enclosingClassMetadata.getMemberClassNames()).contains(classMetadata.getClassName());
+    } catch (IOException e) {
+      // 读取不到外部类时加载这个类，由Class#isMemberClass过滤
+      return false;
+    }
+  }
+
+  private Set<String> loadClassIndex() throws IOException {
+    if (this.classIndexLoaded || !hasLength(this.classIndexLocation)) {
+      return this.classIndex;
+    }
+    this.classIndexLoaded = true;
+    Resource[] resources = RESOURCE_PATTERN_RESOLVER.getResources(this.classIndexLocation);
+    if (resources.length == 0) {
+      return null;
+    }
+    Set<String> classNames = new LinkedHashSet<>();
+    for (Resource resource : resources) {
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+        reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .forEach(classNames::add);
+      }
+      LOGGER.debug(() -> "Loaded class index: '" + resource + "'");
+    }
+    this.classIndex = classNames;
+    return classNames;
+  }
+
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+/**
+ * Receives the measurements of the calls run by a {@code SqlSessionTemplate}. It is only called when it is set on the
+ * template, so a template without metrics does not read the clock or allocate anything for them.
+ * <p>
+ * Implementations are shared by all the threads using the template and must be thread safe and cheap, as they are
+ * called on every statement.
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionTemplate#setSqlSessionMetrics(SqlSessionMetrics)
+ * @see MicrometerSqlSessionMetrics
+ */
+public interface SqlSessionMetrics {
+
+  /**
+   * Records that a {@code SqlSession} has been resolved for a call.
+   *
+   * @param transactional
+   *          whether the session is managed by the current Spring transaction
+   * @param reused
+   *          whether the session was already bound to the current Spring transaction or was taken from a
+   *          {@link SqlSessionPool}, instead of being opened
+   */
+  void sessionAcquired(boolean transactional, boolean reused);
+
+  /**
+   * Records the execution of a mapped statement.
+   *
+   * @param statement
+   *          the id of the mapped statement
+   * @param durationNanos
+   *          the time spent resolving the session, running the statement and, outside of a Spring transaction,
+   *          completing the session
+   * @param exception
+   *          the exception or error thrown to the caller, after translation, or {@code null} if the statement
+   *          succeeded. It is recorded whether it comes from the session resolution, the statement or a plugin.
+   */
+  void statementExecuted(String statement, long durationNanos, Throwable exception);
+
+}
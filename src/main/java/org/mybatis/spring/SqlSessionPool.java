@@ -0,0 +1,361 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.springframework.util.Assert.isInstanceOf;
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
+import org.mybatis.logging.Logger;
+import org.mybatis.logging.LoggerFactory;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Bounded pool of reusable {@code SqlSession}s for calls made outside of a Spring transaction. Without a pool every
+ * such call opens a new {@code SqlSession}, {@code Executor} and {@code Transaction} and throws them away once the call
+ * ends.
+ * <p>
+ * Pooling is opt-in. Once a pool is set on a {@link SqlSessionTemplate}, the template borrows its non-transactional
+ * sessions from it. Closing a pooled session does not close its {@code Executor}. The session is completed as
+ * {@link SqlSession#close()} would: pending batch statements are discarded, the JDBC connection is rolled back if
+ * required and released, the local cache is cleared, and then it goes back to the pool. If the pool is full, or the
+ * session opened a {@code Cursor} or failed to reset, it is closed for real.
+ * <p>
+ * The pool is shared by all threads, so it also works with virtual threads. Sessions are kept per
+ * {@code ExecutorType}, with at most {@code maxIdle} idle sessions for each type. Sessions bound to a Spring
+ * transaction are never pooled.
+ * <p>
+ * It can be declared as a bean, in which case its idle sessions are closed on shutdown:
+ *
+ * <pre class="code">
+ * {@code
+ * <bean id="sqlSessionPool" class="org.mybatis.spring.SqlSessionPool">
+ *   <constructor-arg ref="sqlSessionFactory" />
+ *   <constructor-arg value="16" />
+ * </bean>
+ *
+ * <bean id="sqlSessionTemplate" class="org.mybatis.spring.SqlSessionTemplate">
+ *   <constructor-arg ref="sqlSessionFactory" />
+ *   <property name="sqlSessionPool" ref="sqlSessionPool" />
+ * </bean>
+ * }
+ * </pre>
+ * <p>
+ * The pool requires the {@code SqlSessionFactory} to use a {@code SpringManagedTransactionFactory}.
+ *
+ * @since 3.0.4
+ *
+ * @see SqlSessionTemplate#setSqlSessionPool(SqlSessionPool)
+ */
+public class SqlSessionPool implements DisposableBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SqlSessionPool.class);
+
+  private final SqlSessionFactory sqlSessionFactory;
+
+  private final int maxIdle;
+
+  private final Map<ExecutorType, BlockingQueue<SqlSession>> idleSessions = new EnumMap<>(ExecutorType.class);
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder discardCount = new LongAdder();
+
+  private volatile boolean closed;
+
+  /**
+   * Creates a new pool.
+   *
+   * @param sqlSessionFactory
+   *          the factory the pooled sessions are created from
+   * @param maxIdle
+   *          the maximum number of idle sessions kept for each {@code ExecutorType}
+   */
+  public SqlSessionPool(SqlSessionFactory sqlSessionFactory, int maxIdle) {
+    notNull(sqlSessionFactory, "Property 'sqlSessionFactory' is required");
+    isTrue(maxIdle > 0, "Property 'maxIdle' must be greater than zero");
+    isInstanceOf(SpringManagedTransactionFactory.class,
+        sqlSessionFactory.getConfiguration().getEnvironment().getTransactionFactory(),
+        "SqlSessionFactory must be using a SpringManagedTransactionFactory in order to pool SqlSessions");
+
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.maxIdle = maxIdle;
+    for (ExecutorType executorType : ExecutorType.values()) {
+      this.idleSessions.put(executorType, new ArrayBlockingQueue<>(maxIdle));
+    }
+  }
+
+  public SqlSessionFactory getSqlSessionFactory() {
+    return this.sqlSessionFactory;
+  }
+
+  public int getMaxIdle() {
+    return this.maxIdle;
+  }
+
+  /**
+   * Returns the number of sessions served from the pool.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * Returns the number of sessions that had to be created because the pool had no idle one.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Returns the number of sessions closed instead of being returned to the pool.
+   *
+   * @return the discard count
+   */
+  public long getDiscardCount() {
+    return this.discardCount.sum();
+  }
+
+  /**
+   * Returns the number of idle sessions currently kept by the pool, for all executor types.
+   *
+   * @return the idle count
+   */
+  public int getIdleCount() {
+    return this.idleSessions.values().stream().mapToInt(BlockingQueue::size).sum();
+  }
+
+  /**
+   * Closes all idle sessions. The sessions borrowed afterwards are closed for real instead of being pooled.
+   */
+  @Override
+  public void destroy() {
+    this.closed = true;
+    for (BlockingQueue<SqlSession> sessions : this.idleSessions.values()) {
+      SqlSession session;
+      while ((session = sessions.poll()) != null) {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * Gets an idle session of the given type.
+   *
+   * @param executorType
+   *          the executor type of the session
+   *
+   * @return a session that returns to this pool when closed, or {@code null} if there is no idle one
+   */
+  SqlSession pollSqlSession(ExecutorType executorType) {
+    SqlSession session = this.idleSessions.get(executorType).poll();
+    if (session != null) {
+      this.hitCount.increment();
+      LOGGER.debug(() -> "Reusing pooled SqlSession [" + session + "]");
+    }
+    return session;
+  }
+
+  /**
+   * Creates a new session of the given type, because the pool has no idle one.
+   *
+   * @param executorType
+   *          the executor type of the session
+   *
+   * @return a session that returns to this pool when closed
+   */
+  SqlSession newSqlSession(ExecutorType executorType) {
+    this.missCount.increment();
+    LOGGER.debug(() -> "Creating a new pooled SqlSession");
+    Configuration configuration = this.sqlSessionFactory.getConfiguration();
+    Environment environment = configuration.getEnvironment();
+    Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+    RecyclingExecutor executor = new RecyclingExecutor(configuration.newExecutor(tx, executorType), executorType);
+    executor.sqlSession = new DefaultSqlSession(configuration, executor, false);
+    return executor.sqlSession;
+  }
+
+  /**
+   * Resets the session owning the given executor and puts it back into the pool.
+   *
+   * @return true if the session was pooled, false if it has to be closed
+   */
+  private boolean recycle(RecyclingExecutor executor, boolean forceRollback) {
+    if (this.closed) {
+      return false;
+    }
+    if (executor.cursorOpened) {
+      this.discardCount.increment();
+      return false;
+    }
+    Executor delegate = executor.delegate;
+    try {
+      // the same completion Executor#close(boolean) does, but without closing the executor: the rollback discards the
+      // pending batch statements and the local cache, and the commit without JDBC commit publishes the 2nd level cache
+      // entries, as CachingExecutor#close(false) does
+      if (forceRollback) {
+        delegate.rollback(true);
+      } else {
+        delegate.rollback(false);
+        delegate.commit(false);
+      }
+      delegate.getTransaction().close();
+    } catch (SQLException | RuntimeException e) {
+      LOGGER.debug(() -> "Could not reset pooled SqlSession [" + executor.sqlSession + "]: " + e);
+      this.discardCount.increment();
+      return false;
+    }
+    if (this.idleSessions.get(executor.executorType).offer(executor.sqlSession)) {
+      LOGGER.debug(() -> "Returned SqlSession [" + executor.sqlSession + "] to the pool");
+      return true;
+    }
+    this.discardCount.increment();
+    return false;
+  }
+
+  /**
+   * Executor of a pooled session. Closing it hands the session back to the pool instead of closing the delegate.
+   */
+  private final class RecyclingExecutor implements Executor {
+
+    private final Executor delegate;
+
+    private final ExecutorType executorType;
+
+    private SqlSession sqlSession;
+
+    private boolean cursorOpened;
+
+    RecyclingExecutor(Executor delegate, ExecutorType executorType) {
+      this.delegate = delegate;
+      this.executorType = executorType;
+    }
+
+    @Override
+    public int update(MappedStatement ms, Object parameter) throws SQLException {
+      return this.delegate.update(ms, parameter);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler,
+        CacheKey cacheKey, BoundSql boundSql) throws SQLException {
+      return this.delegate.query(ms, parameter, rowBounds, resultHandler, cacheKey, boundSql);
+    }
+
+    @Override
+    public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler)
+        throws SQLException {
+      return this.delegate.query(ms, parameter, rowBounds, resultHandler);
+    }
+
+    @Override
+    public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
+      // an open cursor keeps the statement and the connection busy, so the session is not reused
+      this.cursorOpened = true;
+      return this.delegate.queryCursor(ms, parameter, rowBounds);
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() throws SQLException {
+      return this.delegate.flushStatements();
+    }
+
+    @Override
+    public void commit(boolean required) throws SQLException {
+      this.delegate.commit(required);
+    }
+
+    @Override
+    public void rollback(boolean required) throws SQLException {
+      this.delegate.rollback(required);
+    }
+
+    @Override
+    public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+      return this.delegate.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    }
+
+    @Override
+    public boolean isCached(MappedStatement ms, CacheKey key) {
+      return this.delegate.isCached(ms, key);
+    }
+
+    @Override
+    public void clearLocalCache() {
+      this.delegate.clearLocalCache();
+    }
+
+    @Override
+    public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key,
+        Class<?> targetType) {
+      this.delegate.deferLoad(ms, resultObject, property, key, targetType);
+    }
+
+    @Override
+    public Transaction getTransaction() {
+      return this.delegate.getTransaction();
+    }
+
+    @Override
+    public void close(boolean forceRollback) {
+      if (!recycle(this, forceRollback)) {
+        this.delegate.close(forceRollback);
+      }
+    }
+
+    @Override
+    public boolean isClosed() {
+      return this.delegate.isClosed();
+    }
+
+    @Override
+    public void setExecutorWrapper(Executor executor) {
+      this.delegate.setExecutorWrapper(executor);
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,16 +15,10 @@
  */
 package org.mybatis.spring;
 
-import static java.lang.reflect.Proxy.newProxyInstance;
-
-import static org.apache.ibatis.reflection.ExceptionUtil.unwrapThrowable;
-import static org.mybatis.spring.SqlSessionUtils.closeSqlSession;
-import static org.mybatis.spring.SqlSessionUtils.getSqlSession;
-import static org.mybatis.spring.SqlSessionUtils.isSqlSessionTransactional;
+import static org.mybatis.spring.SqlSessionUtils.getSqlSessionContext;
+import static org.springframework.util.Assert.isTrue;
 import static org.springframework.util.Assert.notNull;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
@@ -82,12 +76,14 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
   // 执行器类型，也就是Executor的类型
   private final ExecutorType executorType;
 
-  // sqlSession的代理类。代理sqlSession接口。
-  // sqlSessionTemplate是里边调用selectList等方法，实际上是调用这个代理类的方法
-  private final SqlSession sqlSessionProxy;
-
   private final PersistenceExceptionTranslator exceptionTranslator;
 
+  private SqlSessionMetrics sqlSessionMetrics;
+
+  private SqlSessionPool sqlSessionPool;
+
+  private ReadOnlyCompletionPolicy readOnlyCompletionPolicy = ReadOnlyCompletionPolicy.COMMIT;
+
   /**
    * Constructs a Spring managed SqlSession with the {@code SqlSessionFactory} provided as an argument.
    *
@@ -134,10 +130,6 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     this.sqlSessionFactory = sqlSessionFactory;
     this.executorType = executorType;
     this.exceptionTranslator = exceptionTranslator;
-    // 生成sqlSession的动态代理类
-    // 真正处理的是SqlSessionInterceptor这个内部类
-    this.sqlSessionProxy = (SqlSession) newProxyInstance(SqlSessionFactory.class.getClassLoader(),
-        new Class[] { SqlSession.class }, new SqlSessionInterceptor());
   }
 
   public SqlSessionFactory getSqlSessionFactory() {
@@ -152,12 +144,88 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
     return this.exceptionTranslator;
   }
 
+  /**
+   * Sets the {@code SqlSessionMetrics} that records the sessions resolved and the statements executed by this
+   * template, e.g. a {@link MicrometerSqlSessionMetrics}. No metrics are recorded by default.
+   *
+   * @param sqlSessionMetrics
+   *          the metrics, or {@code null} to disable them
+   *
+   * @since 3.0.4
+   */
+  public void setSqlSessionMetrics(SqlSessionMetrics sqlSessionMetrics) {
+    this.sqlSessionMetrics = sqlSessionMetrics;
+  }
+
+  /**
+   * Returns the {@code SqlSessionMetrics} of this template.
+   *
+   * @return the metrics, or {@code null} if they are disabled
+   *
+   * @since 3.0.4
+   */
+  public SqlSessionMetrics getSqlSessionMetrics() {
+    return this.sqlSessionMetrics;
+  }
+
+  /**
+   * Sets the pool the sessions of the calls made outside of a Spring transaction are borrowed from. Without a pool
+   * every such call opens a new {@code SqlSession}.
+   *
+   * @param sqlSessionPool
+   *          a pool of sessions of the {@code SqlSessionFactory} of this template, or {@code null} to disable pooling
+   *
+   * @since 3.0.4
+   */
+  public void setSqlSessionPool(SqlSessionPool sqlSessionPool) {
+    isTrue(sqlSessionPool == null || sqlSessionPool.getSqlSessionFactory() == this.sqlSessionFactory,
+        "The SqlSessionPool must pool the sessions of the SqlSessionFactory of the template");
+    this.sqlSessionPool = sqlSessionPool;
+  }
+
+  /**
+   * Returns the pool of the non-transactional sessions of this template.
+   *
+   * @return the pool, or {@code null} if pooling is disabled
+   *
+   * @since 3.0.4
+   */
+  public SqlSessionPool getSqlSessionPool() {
+    return this.sqlSessionPool;
+  }
+
+  /**
+   * Sets how this template completes a session that is not managed by Spring after a call that only ran a select
+   * statement. The default {@link ReadOnlyCompletionPolicy#COMMIT} force commits it like any other call, which costs a
+   * JDBC commit round trip per query.
+   *
+   * @param readOnlyCompletionPolicy
+   *          the completion policy for read-only calls, or {@code null} to restore the default
+   *
+   * @since 3.0.4
+   */
+  public void setReadOnlyCompletionPolicy(ReadOnlyCompletionPolicy readOnlyCompletionPolicy) {
+    this.readOnlyCompletionPolicy = readOnlyCompletionPolicy == null ? ReadOnlyCompletionPolicy.COMMIT
+        : readOnlyCompletionPolicy;
+  }
+
+  /**
+   * Returns how this template completes a session that is not managed by Spring after a read-only call.
+   *
+   * @return the completion policy for read-only calls
+   *
+   * @since 3.0.4
+   */
+  public ReadOnlyCompletionPolicy getReadOnlyCompletionPolicy() {
+    return this.readOnlyCompletionPolicy;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public <T> T selectOne(String statement) {
-    return this.sqlSessionProxy.selectOne(statement);
+    return executeRead(statement, sqlSession -> sqlSession.selectOne(statement));
   }
 
   /**
@@ -165,7 +233,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <T> T selectOne(String statement, Object parameter) {
-    return this.sqlSessionProxy.selectOne(statement, parameter);
+    return executeRead(statement, sqlSession -> sqlSession.selectOne(statement, parameter));
   }
 
   /**
@@ -173,7 +241,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
-    return this.sqlSessionProxy.selectMap(statement, mapKey);
+    return executeRead(statement, sqlSession -> sqlSession.selectMap(statement, mapKey));
   }
 
   /**
@@ -181,7 +249,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
-    return this.sqlSessionProxy.selectMap(statement, parameter, mapKey);
+    return executeRead(statement, sqlSession -> sqlSession.selectMap(statement, parameter, mapKey));
   }
 
   /**
@@ -189,7 +257,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
-    return this.sqlSessionProxy.selectMap(statement, parameter, mapKey, rowBounds);
+    return executeRead(statement, sqlSession -> sqlSession.selectMap(statement, parameter, mapKey, rowBounds));
   }
 
   /**
@@ -197,7 +265,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <T> Cursor<T> selectCursor(String statement) {
-    return this.sqlSessionProxy.selectCursor(statement);
+    return executeRead(statement, sqlSession -> sqlSession.selectCursor(statement));
   }
 
   /**
@@ -205,7 +273,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <T> Cursor<T> selectCursor(String statement, Object parameter) {
-    return this.sqlSessionProxy.selectCursor(statement, parameter);
+    return executeRead(statement, sqlSession -> sqlSession.selectCursor(statement, parameter));
   }
 
   /**
@@ -213,7 +281,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
-    return this.sqlSessionProxy.selectCursor(statement, parameter, rowBounds);
+    return executeRead(statement, sqlSession -> sqlSession.selectCursor(statement, parameter, rowBounds));
   }
 
   /**
@@ -221,7 +289,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <E> List<E> selectList(String statement) {
-    return this.sqlSessionProxy.selectList(statement);
+    return executeRead(statement, sqlSession -> sqlSession.selectList(statement));
   }
 
   /**
@@ -229,7 +297,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <E> List<E> selectList(String statement, Object parameter) {
-    return this.sqlSessionProxy.selectList(statement, parameter);
+    return executeRead(statement, sqlSession -> sqlSession.selectList(statement, parameter));
   }
 
   /**
@@ -237,7 +305,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
-    return this.sqlSessionProxy.selectList(statement, parameter, rowBounds);
+    return executeRead(statement, sqlSession -> sqlSession.selectList(statement, parameter, rowBounds));
   }
 
   /**
@@ -245,7 +313,10 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public void select(String statement, ResultHandler handler) {
-    this.sqlSessionProxy.select(statement, handler);
+    executeRead(statement, sqlSession -> {
+      sqlSession.select(statement, handler);
+      return null;
+    });
   }
 
   /**
@@ -253,7 +324,10 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public void select(String statement, Object parameter, ResultHandler handler) {
-    this.sqlSessionProxy.select(statement, parameter, handler);
+    executeRead(statement, sqlSession -> {
+      sqlSession.select(statement, parameter, handler);
+      return null;
+    });
   }
 
   /**
@@ -261,7 +335,10 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
-    this.sqlSessionProxy.select(statement, parameter, rowBounds, handler);
+    executeRead(statement, sqlSession -> {
+      sqlSession.select(statement, parameter, rowBounds, handler);
+      return null;
+    });
   }
 
   /**
@@ -269,7 +346,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int insert(String statement) {
-    return this.sqlSessionProxy.insert(statement);
+    return executeWrite(statement, null, (sqlSession, st, parameter) -> sqlSession.insert(st));
   }
 
   /**
@@ -277,7 +354,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int insert(String statement, Object parameter) {
-    return this.sqlSessionProxy.insert(statement, parameter);
+    return executeWrite(statement, parameter, SqlSession::insert);
   }
 
   /**
@@ -285,7 +362,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int update(String statement) {
-    return this.sqlSessionProxy.update(statement);
+    return executeWrite(statement, null, (sqlSession, st, parameter) -> sqlSession.update(st));
   }
 
   /**
@@ -293,7 +370,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int update(String statement, Object parameter) {
-    return this.sqlSessionProxy.update(statement, parameter);
+    return executeWrite(statement, parameter, SqlSession::update);
   }
 
   /**
@@ -301,7 +378,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int delete(String statement) {
-    return this.sqlSessionProxy.delete(statement);
+    return executeWrite(statement, null, (sqlSession, st, parameter) -> sqlSession.delete(st));
   }
 
   /**
@@ -309,7 +386,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public int delete(String statement, Object parameter) {
-    return this.sqlSessionProxy.delete(statement, parameter);
+    return executeWrite(statement, parameter, SqlSession::delete);
   }
 
   /**
@@ -365,7 +442,10 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public void clearCache() {
-    this.sqlSessionProxy.clearCache();
+    execute(sqlSession -> {
+      sqlSession.clearCache();
+      return null;
+    });
   }
 
   /**
@@ -381,7 +461,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public Connection getConnection() {
-    return this.sqlSessionProxy.getConnection();
+    return execute(SqlSession::getConnection);
   }
 
   /**
@@ -391,7 +471,7 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
    */
   @Override
   public List<BatchResult> flushStatements() {
-    return this.sqlSessionProxy.flushStatements();
+    return execute(SqlSession::flushStatements);
   }
 
   /**
@@ -420,46 +500,194 @@ public class SqlSessionTemplate implements SqlSession, DisposableBean {
   }
 
   /**
-   * Proxy needed to route MyBatis method calls to the proper SqlSession got from Spring's Transaction Manager It also
-   * unwraps exceptions thrown by {@code Method#invoke(Object, Object...)} to pass a {@code PersistenceException} to the
-   * {@code PersistenceExceptionTranslator}.
-   */
-  private class SqlSessionInterceptor implements InvocationHandler {
-    @Override
-    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      // 获取DefaultSqlSession，既然DefaultSqlSession是线程不安全的，这里揭秘了怎么获取线程安全的DefaultSqlSession
-      SqlSession sqlSession = getSqlSession(SqlSessionTemplate.this.sqlSessionFactory,
-          SqlSessionTemplate.this.executorType, SqlSessionTemplate.this.exceptionTranslator);
-      try {
-        // 通过反射方法调用
-        Object result = method.invoke(sqlSession, args);
-        if (!isSqlSessionTransactional(sqlSession, SqlSessionTemplate.this.sqlSessionFactory)) {
-          // force commit even on non-dirty sessions because some databases require
-          // a commit/rollback before calling close()
-          // 手动提交事务
-          sqlSession.commit(true);
-        }
-        return result;
-      } catch (Throwable t) {
-        Throwable unwrapped = unwrapThrowable(t);
-        if (SqlSessionTemplate.this.exceptionTranslator != null && unwrapped instanceof PersistenceException) {
-          // release the connection to avoid a deadlock if the translator is no loaded. See issue #22
-          // 发现异常，关闭sqlSession回滚事务
-          closeSqlSession(sqlSession, SqlSessionTemplate.this.sqlSessionFactory);
-          sqlSession = null;
-          Throwable translated = SqlSessionTemplate.this.exceptionTranslator
-              .translateExceptionIfPossible((PersistenceException) unwrapped);
-          if (translated != null) {
-            unwrapped = translated;
-          }
-        }
-        throw unwrapped;
-      } finally {
-        if (sqlSession != null) {
-          closeSqlSession(sqlSession, SqlSessionTemplate.this.sqlSessionFactory);
-        }
+   * Runs the given callback against the SqlSession got from Spring's Transaction Manager, so several statements can be
+   * executed over one resolved session. Outside of a Spring transaction the session is committed and closed once the
+   * callback returns. A {@code PersistenceException} is passed to the {@code PersistenceExceptionTranslator}.
+   * <p>
+   * Every {@code SqlSession} method of this template is routed through here too. The call is dispatched directly on
+   * the resolved session, so no reflection, argument array or {@code InvocationTargetException} wrapping is involved,
+   * and the session holder is looked up only once per call.
+   *
+   * @param <T>
+   *          the result type
+   * @param callback
+   *          the statements to run against the resolved SqlSession
+   *
+   * @return the result of the callback
+   *
+   * @since 3.0.4
+   */
+  public <T> T execute(SqlSessionCallback<T> callback) {
+    notNull(callback, "Parameter 'callback' must be not null");
+    return execute(callback, null, false);
+  }
+
+  /**
+   * Same as {@link #execute(SqlSessionCallback)} for a select statement, so the session can be completed according to
+   * the {@link ReadOnlyCompletionPolicy} of this template.
+   *
+   * @param statement
+   *          the select statement run by the callback
+   * @param callback
+   *          the operation to run against the resolved SqlSession
+   *
+   * @return the result of the operation
+   */
+  private <T> T executeRead(String statement, SqlSessionCallback<T> callback) {
+    return execute(callback, statement, true);
+  }
+
+  /**
+   * Same as {@link #execute(SqlSessionCallback)} for the insert, update and delete operations. The update count is
+   * returned as a primitive, the {@code BatchExecutor} one is out of the range of the {@code Integer} cache and boxing
+   * it would allocate on every batched write.
+   *
+   * @param statement
+   *          the insert, update or delete statement
+   * @param parameter
+   *          the parameter object of the statement, or {@code null}
+   * @param callback
+   *          the operation to run against the resolved SqlSession
+   *
+   * @return the number of rows affected
+   */
+  private int executeWrite(String statement, Object parameter, IntSqlSessionCallback callback) {
+    long start = callStarted();
+    SqlSessionContext context = null;
+    try {
+      context = acquireSqlSessionContext();
+      int result = callback.doInSqlSession(context.getSqlSession(), statement, parameter);
+      callSucceeded(context, statement, false, start);
+      return result;
+    } catch (PersistenceException e) {
+      throw callFailed(context, statement, start, e);
+    } catch (RuntimeException | Error e) {
+      // 其他异常不翻译，但同样计入错误指标
+      statementExecuted(this.sqlSessionMetrics, statement, start, e);
+      throw e;
+    } finally {
+      if (context != null) {
+        context.release();
+      }
+    }
+  }
+
+  private <T> T execute(SqlSessionCallback<T> callback, String statement, boolean read) {
+    long start = callStarted();
+    SqlSessionContext context = null;
+    try {
+      context = acquireSqlSessionContext();
+      T result = callback.doInSqlSession(context.getSqlSession());
+      callSucceeded(context, statement, read, start);
+      return result;
+    } catch (PersistenceException e) {
+      throw callFailed(context, statement, start, e);
+    } catch (RuntimeException | Error e) {
+      // 其他异常不翻译，但同样计入错误指标
+      statementExecuted(this.sqlSessionMetrics, statement, start, e);
+      throw e;
+    } finally {
+      if (context != null) {
+        context.release();
+      }
+    }
+  }
+
+  /**
+   * Returns the start time of a call, if metrics are enabled. Together with {@link #acquireSqlSessionContext},
+   * {@link #callSucceeded} and {@link #callFailed}, it holds the life-cycle shared by the generic and the primitive
+   * {@code execute} methods.
+   */
+  private long callStarted() {
+    return this.sqlSessionMetrics == null ? 0L : System.nanoTime();
+  }
+
+  /**
+   * Resolves the session of a call and records it, if metrics are enabled.
+   */
+  private SqlSessionContext acquireSqlSessionContext() {
+    // 获取DefaultSqlSession，既然DefaultSqlSession是线程不安全的，这里揭秘了怎么获取线程安全的DefaultSqlSession
+    SqlSessionContext context = getSqlSessionContext(this.sqlSessionFactory, this.executorType,
+        this.exceptionTranslator, this.sqlSessionPool);
+    SqlSessionMetrics metrics = this.sqlSessionMetrics;
+    if (metrics != null) {
+      metrics.sessionAcquired(context.isSqlSessionTransactional(), context.isSqlSessionReused());
+    }
+    return context;
+  }
+
+  /**
+   * Completes the session of a call that returned normally and records its statement.
+   */
+  private void callSucceeded(SqlSessionContext context, String statement, boolean read, long start) {
+    completeIfNotTransactional(context, read ? statement : null);
+    statementExecuted(this.sqlSessionMetrics, statement, start, null);
+  }
+
+  /**
+   * Records the failed statement and returns the exception to throw, translated if a translator is set. The context
+   * is {@code null} if the session could not be resolved.
+   */
+  private RuntimeException callFailed(SqlSessionContext context, String statement, long start,
+      PersistenceException e) {
+    if (this.exceptionTranslator == null) {
+      statementExecuted(this.sqlSessionMetrics, statement, start, e);
+      return e;
+    }
+    // release the connection to avoid a deadlock if the translator is no loaded. See issue #22
+    if (context != null) {
+      context.release();
+    }
+    RuntimeException translated = translate(e);
+    statementExecuted(this.sqlSessionMetrics, statement, start, translated);
+    return translated;
+  }
+
+  /**
+   * Completes a session that is not managed by Spring. Writes are always force committed. A call that only ran a
+   * select statement is completed according to the {@link ReadOnlyCompletionPolicy} of this template, unless the
+   * statement is a dirty select (one declared to affect data).
+   *
+   * @param context
+   *          the resolved session
+   * @param readStatement
+   *          the select statement that was run, or {@code null} if the call may have written
+   */
+  private void completeIfNotTransactional(SqlSessionContext context, String readStatement) {
+    if (context.isSqlSessionTransactional()) {
+      return;
+    }
+    SqlSession sqlSession = context.getSqlSession();
+    ReadOnlyCompletionPolicy policy = readStatement == null ? ReadOnlyCompletionPolicy.COMMIT
+        : this.readOnlyCompletionPolicy;
+    // the statement has just run, so it is known to the configuration
+    if (policy == ReadOnlyCompletionPolicy.COMMIT
+        || getConfiguration().getMappedStatement(readStatement, false).isDirtySelect()) {
+      // force commit even on non-dirty sessions because some databases require
+      // a commit/rollback before calling close()
+      sqlSession.commit(true);
+    } else {
+      // flushes the 2nd level cache entries and clears the local cache without a JDBC commit
+      sqlSession.commit(false);
+      if (policy == ReadOnlyCompletionPolicy.ROLLBACK) {
+        sqlSession.rollback(true);
       }
     }
   }
 
+  /**
+   * Records the executed statement, if metrics are enabled and the call ran a single known statement.
+   */
+  private static void statementExecuted(SqlSessionMetrics metrics, String statement, long start,
+      Throwable exception) {
+    if (metrics != null && statement != null) {
+      metrics.statementExecuted(statement, System.nanoTime() - start, exception);
+    }
+  }
+
+  private RuntimeException translate(PersistenceException e) {
+    RuntimeException translated = this.exceptionTranslator.translateExceptionIfPossible(e);
+    return translated != null ? translated : e;
+  }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,23 @@ package org.mybatis.spring;
 
 import static org.springframework.util.Assert.notNull;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.TransactionalCacheManager;
 import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
 import org.mybatis.logging.Logger;
 import org.mybatis.logging.LoggerFactory;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
@@ -95,6 +107,61 @@ public final class SqlSessionUtils {
    */
   public static SqlSession getSqlSession(SqlSessionFactory sessionFactory, ExecutorType executorType,
       PersistenceExceptionTranslator exceptionTranslator) {
+    return getSqlSessionContext(sessionFactory, executorType, exceptionTranslator).getSqlSession();
+  }
+
+  /**
+   * Same as {@link #getSqlSession(SqlSessionFactory, ExecutorType, PersistenceExceptionTranslator)} but returns the
+   * resolved SqlSession together with the {@code SqlSessionHolder} it was found in or registered to. The holder is
+   * looked up only once, so the returned context can tell whether the session is transactional and release it without
+   * going through {@code TransactionSynchronizationManager} again.
+   *
+   * @param sessionFactory
+   *          a MyBatis {@code SqlSessionFactory} to create new sessions
+   * @param executorType
+   *          The executor type of the SqlSession to create
+   * @param exceptionTranslator
+   *          Optional. Translates SqlSession.commit() exceptions to Spring exceptions.
+   *
+   * @return the resolved SqlSession and its transactional state
+   *
+   * @throws TransientDataAccessResourceException
+   *           if a transaction is active and the {@code SqlSessionFactory} is not using a
+   *           {@code SpringManagedTransactionFactory}
+   *
+   * @since 3.0.4
+   */
+  public static SqlSessionContext getSqlSessionContext(SqlSessionFactory sessionFactory, ExecutorType executorType,
+      PersistenceExceptionTranslator exceptionTranslator) {
+    return getSqlSessionContext(sessionFactory, executorType, exceptionTranslator, null);
+  }
+
+  /**
+   * Same as {@link #getSqlSessionContext(SqlSessionFactory, ExecutorType, PersistenceExceptionTranslator)} but takes
+   * the session from the given pool when no Spring transaction synchronization is active. A pooled session goes back
+   * to the pool when it is closed.
+   *
+   * @param sessionFactory
+   *          a MyBatis {@code SqlSessionFactory} to create new sessions
+   * @param executorType
+   *          The executor type of the SqlSession to create
+   * @param exceptionTranslator
+   *          Optional. Translates SqlSession.commit() exceptions to Spring exceptions.
+   * @param pool
+   *          Optional. The pool of the non-transactional sessions of the {@code SqlSessionFactory}.
+   *
+   * @return the resolved SqlSession and its transactional state
+   *
+   * @throws TransientDataAccessResourceException
+   *           if a transaction is active and the {@code SqlSessionFactory} is not using a
+   *           {@code SpringManagedTransactionFactory}
+   *
+   * @since 3.0.4
+   *
+   * @see SqlSessionPool
+   */
+  public static SqlSessionContext getSqlSessionContext(SqlSessionFactory sessionFactory, ExecutorType executorType,
+      PersistenceExceptionTranslator exceptionTranslator, SqlSessionPool pool) {
 
     notNull(sessionFactory, NO_SQL_SESSION_FACTORY_SPECIFIED);
     notNull(executorType, NO_EXECUTOR_TYPE_SPECIFIED);
@@ -106,17 +173,26 @@ public final class SqlSessionUtils {
     // 从holder里边获取DefaultSqlSession
     SqlSession session = sessionHolder(executorType, holder);
     if (session != null) {
-      return session;
+      return new SqlSessionContext(session, holder, true);
+    }
+
+    // 没有事务时，优先复用池中空闲的DefaultSqlSession
+    if (pool != null && !TransactionSynchronizationManager.isSynchronizationActive()) {
+      session = pool.pollSqlSession(executorType);
+      if (session != null) {
+        return new SqlSessionContext(session, null, true);
+      }
+      return new SqlSessionContext(pool.newSqlSession(executorType), null, false);
     }
 
-    LOGGER.debug(() -> "Creating a new SqlSession");
     // 为空的话，通过sessionFactory工厂创建一个新的DefaultSqlSession
+    LOGGER.debug(() -> "Creating a new SqlSession");
     session = sessionFactory.openSession(executorType);
 
     // 封装成holder放入到ThreadLocal中
-    registerSessionHolder(sessionFactory, executorType, exceptionTranslator, session);
+    holder = registerSessionHolder(sessionFactory, executorType, exceptionTranslator, session);
 
-    return session;
+    return new SqlSessionContext(session, holder, false);
   }
 
   /**
@@ -134,10 +210,12 @@ public final class SqlSessionUtils {
    *          persistenceExceptionTranslator used for registration.
    * @param session
    *          sqlSession used for registration.
+   *
+   * @return the registered holder, or {@code null} if the session was not registered
    */
-  private static void registerSessionHolder(SqlSessionFactory sessionFactory, ExecutorType executorType,
+  private static SqlSessionHolder registerSessionHolder(SqlSessionFactory sessionFactory, ExecutorType executorType,
       PersistenceExceptionTranslator exceptionTranslator, SqlSession session) {
-    SqlSessionHolder holder;
+    SqlSessionHolder holder = null;
     if (TransactionSynchronizationManager.isSynchronizationActive()) {
       Environment environment = sessionFactory.getConfiguration().getEnvironment();
 
@@ -163,7 +241,7 @@ public final class SqlSessionUtils {
       LOGGER.debug(() -> "SqlSession [" + session
           + "] was not registered for synchronization because synchronization is not active");
     }
-
+    return holder;
   }
 
   private static SqlSession sessionHolder(ExecutorType executorType, SqlSessionHolder holder) {
@@ -238,6 +316,8 @@ public final class SqlSessionUtils {
 
     private final SqlSessionFactory sessionFactory;
 
+    private final List<TransactionalCacheManager> transactionalCacheManagers = new ArrayList<>();
+
     private boolean holderActive = true;
 
     public SqlSessionSynchronization(SqlSessionHolder holder, SqlSessionFactory sessionFactory) {
@@ -289,10 +369,11 @@ public final class SqlSessionUtils {
       // But, do cleanup the SqlSession / Executor, including flushing BATCH statements so
       // they are actually executed.
       // SpringManagedTransaction will no-op the commit over the jdbc connection
-      // TODO This updates 2nd level caches but the tx may be rolledback later on!
+      // The 2nd level cache entries are held back until afterCompletion, as the tx may be rolledback later on
       if (TransactionSynchronizationManager.isActualTransactionActive()) {
         try {
           LOGGER.debug(() -> "Transaction synchronization committing SqlSession [" + this.holder.getSqlSession() + "]");
+          detachTransactionalCacheManager();
           this.holder.getSqlSession().commit();
         } catch (PersistenceException p) {
           if (this.holder.getPersistenceExceptionTranslator() != null) {
@@ -319,8 +400,7 @@ public final class SqlSessionUtils {
             .debug(() -> "Transaction synchronization deregistering SqlSession [" + this.holder.getSqlSession() + "]");
         TransactionSynchronizationManager.unbindResource(sessionFactory);
         this.holderActive = false;
-        LOGGER.debug(() -> "Transaction synchronization closing SqlSession [" + this.holder.getSqlSession() + "]");
-        this.holder.getSqlSession().close();
+        closeSqlSession();
       }
     }
 
@@ -336,11 +416,63 @@ public final class SqlSessionUtils {
             .debug(() -> "Transaction synchronization deregistering SqlSession [" + this.holder.getSqlSession() + "]");
         TransactionSynchronizationManager.unbindResourceIfPossible(sessionFactory);
         this.holderActive = false;
-        LOGGER.debug(() -> "Transaction synchronization closing SqlSession [" + this.holder.getSqlSession() + "]");
-        this.holder.getSqlSession().close();
+        closeSqlSession();
+      }
+      // 事务结束后才把TransactionalCacheManager中的缓存写入二级缓存，回滚时丢弃
+      for (TransactionalCacheManager transactionalCacheManager : this.transactionalCacheManagers) {
+        if (status == STATUS_COMMITTED) {
+          transactionalCacheManager.commit();
+        } else {
+          transactionalCacheManager.rollback();
+        }
       }
+      this.transactionalCacheManagers.clear();
       this.holder.reset();
     }
+
+    private void closeSqlSession() {
+      LOGGER.debug(() -> "Transaction synchronization closing SqlSession [" + this.holder.getSqlSession() + "]");
+      detachTransactionalCacheManager();
+      this.holder.getSqlSession().close();
+    }
+
+    /**
+     * Replaces the {@code TransactionalCacheManager} of the {@code CachingExecutor} of the session by an empty one and
+     * keeps it until afterCompletion, so that committing or closing the session does not update the 2nd level caches.
+     * <p>
+     * MyBatis has no API for this, so the {@code executor} field of {@code DefaultSqlSession}, the {@code target} field
+     * of {@code Plugin} and the {@code tcm} field of {@code CachingExecutor} are accessed by reflection. When they
+     * cannot be reached, e.g. after a MyBatis upgrade renamed them, the session completes its 2nd level cache entries
+     * itself, before the transaction commits, and a warning is logged.
+     */
+    private void detachTransactionalCacheManager() {
+      SqlSession session = this.holder.getSqlSession();
+      if (!(session instanceof DefaultSqlSession)) {
+        return;
+      }
+      try {
+        Object executor = SystemMetaObject.forObject(session).getValue("executor");
+        // 跳过插件生成的代理，找到被包装的CachingExecutor
+        while (executor != null && Proxy.isProxyClass(executor.getClass())) {
+          InvocationHandler handler = Proxy.getInvocationHandler(executor);
+          if (!(handler instanceof Plugin)) {
+            break;
+          }
+          executor = SystemMetaObject.forObject(handler).getValue("target");
+        }
+        if (executor instanceof CachingExecutor) {
+          MetaObject metaExecutor = SystemMetaObject.forObject(executor);
+          this.transactionalCacheManagers.add((TransactionalCacheManager) metaExecutor.getValue("tcm"));
+          metaExecutor.setValue("tcm", new TransactionalCacheManager());
+        } else if (session.getConfiguration().isCacheEnabled()) {
+          LOGGER.warn(() -> "Could not find the CachingExecutor of SqlSession [" + session
+              + "]. Its 2nd level cache entries are published before the transaction commits.");
+        }
+      } catch (ReflectionException | ClassCastException e) {
+        LOGGER.warn(() -> "Could not hold back the 2nd level cache entries of SqlSession [" + session
+            + "], they are published before the transaction commits. Cause by " + e.toString());
+      }
+    }
   }
 
 }
@@ -159,6 +159,16 @@ public @interface MapperScan {
    */
   String sqlSessionFactoryRef() default "";
 
+  /**
+   * Specifies the {@code SpringCacheProvider} that the namespaces of the scanned mappers are bound to, if they declare
+   * a {@code SpringCache}, e.g. with {@code @CacheNamespace(implementation = SpringCache.class)}.
+   *
+   * @since 3.0.4
+   *
+   * @return the bean name of {@code SpringCacheProvider}
+   */
+  String cacheProviderRef() default "";
+
   /**
    * Specifies a custom MapperFactoryBean to return a mybatis proxy as spring bean.
    *
@@ -129,6 +129,11 @@ public class MapperScannerRegistrar implements ImportBeanDefinitionRegistrar, Re
       builder.addPropertyValue("sqlSessionFactoryBeanName", annoAttrs.getString("sqlSessionFactoryRef"));
     }
 
+    String cacheProviderRef = annoAttrs.getString("cacheProviderRef");
+    if (StringUtils.hasText(cacheProviderRef)) {
+      builder.addPropertyValue("cacheProviderBeanName", cacheProviderRef);
+    }
+
     List<String> basePackages = new ArrayList<>();
 
     // 扫描的mapper的basePackages
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,20 @@ package org.mybatis.spring.batch;
 import static org.springframework.util.Assert.isTrue;
 import static org.springframework.util.Assert.notNull;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.session.ExecutorType;
@@ -30,9 +43,19 @@ import org.mybatis.spring.SqlSessionTemplate;
 import org.springframework.batch.item.Chunk;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.classify.Classifier;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * {@code ItemWriter} that uses the batching features from {@code SqlSessionTemplate} to execute a batch of statements
@@ -40,7 +63,9 @@ import org.springframework.dao.InvalidDataAccessResourceUsageException;
  * <p>
  * Provided to facilitate the migration from Spring-Batch iBATIS 2 writers to MyBatis 3.
  * <p>
- * The user must provide a MyBatis statement id that points to the SQL statement defined in the MyBatis.
+ * The user must provide a MyBatis statement id that points to the SQL statement defined in the MyBatis, or a
+ * classifier that picks the statement id of each item. With a classifier, the items of a chunk are grouped by
+ * statement so that each statement is sent as one JDBC batch, and all groups are flushed together.
  * <p>
  * It is expected that {@link #write(Chunk)} is called inside a transaction. If it is not each statement call will be
  * autocommitted and flushStatements will return no results.
@@ -60,13 +85,27 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
 
   private String statementId;
 
+  private Classifier<? super T, String> statementIdClassifier;
+
   private boolean assertUpdates = true;
 
+  private int maxBatchSize;
+
   private Converter<T, ?> itemToParameterConverter = new PassThroughConverter<>();
 
+  private int partitions = 1;
+
+  private Converter<T, ?> partitionKeyConverter;
+
+  private TaskExecutor taskExecutor;
+
+  private PlatformTransactionManager transactionManager;
+
+  private Duration partitionStartTimeout = Duration.ofSeconds(30);
+
   /**
    * Public setter for the flag that determines whether an assertion is made that number of BatchResult objects returned
-   * is one and all items cause at least one row to be updated.
+   * is one per flush and all items cause at least one row to be updated.
    *
    * @param assertUpdates
    *          the flag to set. Defaults to true;
@@ -75,6 +114,21 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
     this.assertUpdates = assertUpdates;
   }
 
+  /**
+   * Public setter for the maximum number of items sent in one JDBC batch. When a chunk has more items, the statements
+   * are flushed every {@code maxBatchSize} items instead of once for the whole chunk, so the memory held by the driver
+   * and the executor does not grow with the chunk size. The update counts of every flush are checked, with the index of
+   * the item in the chunk.
+   *
+   * @param maxBatchSize
+   *          the maximum number of items per JDBC batch. Defaults to 0, which sends a chunk as one batch
+   *
+   * @since 3.0.4
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
   /**
    * Public setter for {@link SqlSessionFactory} for injection purposes.
    *
@@ -107,6 +161,22 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
     this.statementId = statementId;
   }
 
+  /**
+   * Public setter for a classifier that picks the statement id of each item, for chunks that mix statements, e.g.
+   * inserts and updates. When set, it takes precedence over the {@code statementId}.
+   * <p>
+   * The items are executed grouped by statement, in the order each statement is first used in the chunk, and the
+   * update counts of every {@code BatchResult} are checked against the item they belong to.
+   *
+   * @param statementIdClassifier
+   *          a classifier that returns the statement id of an item
+   *
+   * @since 3.0.4
+   */
+  public void setStatementIdClassifier(Classifier<? super T, String> statementIdClassifier) {
+    this.statementIdClassifier = statementIdClassifier;
+  }
+
   /**
    * Public setter for a converter that converting item to parameter object.
    * <p>
@@ -121,6 +191,93 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
     this.itemToParameterConverter = itemToParameterConverter;
   }
 
+  /**
+   * Public setter for the number of partitions a chunk is split into and written concurrently. Defaults to 1, which
+   * writes the whole chunk on the calling thread in its transaction.
+   * <p>
+   * With more partitions, each item goes to the partition of the hash of its {@code partitionKeyConverter} key, and
+   * each partition is written on a thread of the {@code taskExecutor}, in its own transaction of the
+   * {@code transactionManager} and so on its own BATCH {@code SqlSession} and connection. {@link #write(Chunk)} waits
+   * until every partition has been flushed and its update counts checked:
+   * <ul>
+   * <li>if one partition fails, all partitions are rolled back and its exception is thrown, with the index of the item
+   * in the chunk</li>
+   * <li>otherwise the partitions are committed just before the transaction of the calling thread commits, or rolled
+   * back if it rolls back; without a transaction they are committed before returning</li>
+   * </ul>
+   * A failure while committing a partition is thrown from the commit of the chunk transaction, which is then rolled
+   * back. The partitions commit one after another, so this is not an atomic commit: the partitions committed before
+   * the failure, or before a failure of the chunk transaction's own commit, stay committed.
+   * <p>
+   * The {@code taskExecutor} must be able to run {@code partitions} tasks at the same time, because every partition
+   * keeps its thread until the outcome of the chunk is known, and the {@code DataSource} must provide one connection
+   * per partition in addition to the one of the chunk transaction. A {@code SyncTaskExecutor}, or a
+   * {@code ThreadPoolTaskExecutor} or throttled {@code SimpleAsyncTaskExecutor} with fewer threads, is rejected by
+   * {@link #afterPropertiesSet()}; with other executors, a partition that has not started within the
+   * {@code partitionStartTimeout} fails the chunk.
+   *
+   * @param partitions
+   *          the number of partitions
+   *
+   * @since 3.0.4
+   */
+  public void setPartitions(int partitions) {
+    this.partitions = partitions;
+  }
+
+  /**
+   * Public setter for the maximum time {@link #write(Chunk)} waits for every partition to start on the
+   * {@code taskExecutor}. When a partition has not started in time, it is cancelled and the chunk fails and is rolled
+   * back, instead of waiting forever for a thread held by another partition of the same chunk.
+   *
+   * @param partitionStartTimeout
+   *          the maximum time to wait for the partitions to start. Defaults to 30 seconds
+   *
+   * @since 3.0.4
+   */
+  public void setPartitionStartTimeout(Duration partitionStartTimeout) {
+    this.partitionStartTimeout = partitionStartTimeout;
+  }
+
+  /**
+   * Public setter for a converter that returns the partition key of an item, e.g. the key of the partitioned table.
+   * Required when {@code partitions} is greater than 1.
+   *
+   * @param partitionKeyConverter
+   *          a converter that returns the partition key of an item
+   *
+   * @since 3.0.4
+   */
+  public void setPartitionKeyConverter(Converter<T, ?> partitionKeyConverter) {
+    this.partitionKeyConverter = partitionKeyConverter;
+  }
+
+  /**
+   * Public setter for the {@link TaskExecutor} that writes the partitions. Required when {@code partitions} is greater
+   * than 1.
+   *
+   * @param taskExecutor
+   *          the executor that runs one task per partition
+   *
+   * @since 3.0.4
+   */
+  public void setTaskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+  }
+
+  /**
+   * Public setter for the {@link PlatformTransactionManager} of the partition transactions. Required when
+   * {@code partitions} is greater than 1.
+   *
+   * @param transactionManager
+   *          the transaction manager of the {@code DataSource} used by the {@code SqlSessionFactory}
+   *
+   * @since 3.0.4
+   */
+  public void setTransactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+  }
+
   /**
    * Check mandatory properties - there must be an SqlSession and a statementId.
    */
@@ -129,8 +286,42 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
     notNull(sqlSessionTemplate, "A SqlSessionFactory or a SqlSessionTemplate is required.");
     isTrue(ExecutorType.BATCH == sqlSessionTemplate.getExecutorType(),
         "SqlSessionTemplate's executor type must be BATCH");
-    notNull(statementId, "A statementId is required.");
+    if (statementIdClassifier == null) {
+      notNull(statementId, "A statementId is required.");
+    }
     notNull(itemToParameterConverter, "A itemToParameterConverter is required.");
+    if (partitions > 1) {
+      notNull(partitionKeyConverter, "A partitionKeyConverter is required when partitions is greater than 1.");
+      notNull(taskExecutor, "A taskExecutor is required when partitions is greater than 1.");
+      notNull(transactionManager, "A transactionManager is required when partitions is greater than 1.");
+      notNull(partitionStartTimeout, "A partitionStartTimeout is required when partitions is greater than 1.");
+      // 每个分区在chunk结束前一直占用线程，线程数不足时后面的分区永远不会开始执行
+      int concurrencyLimit = concurrencyLimit(taskExecutor);
+      isTrue(concurrencyLimit >= partitions, () -> "The taskExecutor runs at most " + concurrencyLimit
+          + " tasks at the same time, but partitions is " + partitions + ".");
+    }
+  }
+
+  /**
+   * Returns how many tasks the executor can run at the same time, as far as it is known.
+   */
+  private static int concurrencyLimit(TaskExecutor taskExecutor) {
+    if (taskExecutor instanceof SyncTaskExecutor) {
+      return 0;
+    }
+    if (taskExecutor instanceof ThreadPoolTaskExecutor) {
+      ThreadPoolTaskExecutor threadPoolTaskExecutor = (ThreadPoolTaskExecutor) taskExecutor;
+      // 队列未满时线程池不会创建超过核心线程数的线程
+      return threadPoolTaskExecutor.getQueueCapacity() > 0 ? threadPoolTaskExecutor.getCorePoolSize()
+          : threadPoolTaskExecutor.getMaxPoolSize();
+    }
+    if (taskExecutor instanceof SimpleAsyncTaskExecutor) {
+      SimpleAsyncTaskExecutor simpleAsyncTaskExecutor = (SimpleAsyncTaskExecutor) taskExecutor;
+      if (simpleAsyncTaskExecutor.isThrottleActive()) {
+        return simpleAsyncTaskExecutor.getConcurrencyLimit();
+      }
+    }
+    return Integer.MAX_VALUE;
   }
 
   /**
@@ -142,31 +333,303 @@ public class MyBatisBatchItemWriter<T> implements ItemWriter<T>, InitializingBea
     if (!items.isEmpty()) {
       LOGGER.debug(() -> "Executing batch with " + items.size() + " items.");
 
-      for (T item : items) {
-        sqlSessionTemplate.update(statementId, itemToParameterConverter.convert(item));
+      List<? extends T> itemList = items.getItems();
+      List<int[]> partitionedIndexes = partitions > 1 ? partition(itemList)
+          : Collections.singletonList(IntStream.range(0, itemList.size()).toArray());
+      if (partitionedIndexes.size() == 1) {
+        writeItems(itemList, partitionedIndexes.get(0));
+      } else {
+        writePartitions(itemList, partitionedIndexes);
       }
+    }
+  }
 
-      List<BatchResult> results = sqlSessionTemplate.flushStatements();
+  /**
+   * Writes the items at the given indexes through the {@code SqlSessionTemplate}.
+   */
+  private void writeItems(List<? extends T> items, int[] itemIndexes) {
+    String[] statementIds = new String[items.size()];
+    int[] executionOrder = executionOrder(items, itemIndexes, statementIds);
 
-      if (assertUpdates) {
-        if (results.size() != 1) {
-          throw new InvalidDataAccessResourceUsageException("Batch execution returned invalid results. "
-              + "Expected 1 but number of BatchResult objects returned was " + results.size());
+    // 每执行maxBatchSize个item就flush一次，每次flush后立即校验update count
+    int checked = 0;
+    for (int i = 0; i < executionOrder.length; i++) {
+      int index = executionOrder[i];
+      sqlSessionTemplate.update(statementIds[index], itemToParameterConverter.convert(items.get(index)));
+      int executed = i + 1;
+      if (executed == executionOrder.length || (maxBatchSize > 0 && executed % maxBatchSize == 0)) {
+        List<BatchResult> results = sqlSessionTemplate.flushStatements();
+        if (assertUpdates) {
+          assertUpdateCounts(results, items, statementIds, executionOrder, checked, executed);
         }
+        checked = executed;
+      }
+    }
+  }
+
+  /**
+   * Returns the indexes of the items in the order they are executed, and fills the statement id of each item.
+   */
+  private int[] executionOrder(List<? extends T> items, int[] itemIndexes, String[] statementIds) {
+    if (statementIdClassifier == null) {
+      Arrays.fill(statementIds, statementId);
+      return itemIndexes;
+    }
+
+    // 按statement分组，同一个statement的item连续执行，BatchExecutor会把它们放进同一个JDBC批次
+    Map<String, List<Integer>> itemIndexesByStatement = new LinkedHashMap<>();
+    for (int i : itemIndexes) {
+      T item = items.get(i);
+      String itemStatementId = statementIdClassifier.classify(item);
+      notNull(itemStatementId, () -> "No statementId is classified for item: [" + item + "]");
+      statementIds[i] = itemStatementId;
+      itemIndexesByStatement.computeIfAbsent(itemStatementId, key -> new ArrayList<>()).add(i);
+    }
+    return itemIndexesByStatement.values().stream().flatMap(List::stream).mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Returns the indexes of the items of each non-empty partition.
+   */
+  private List<int[]> partition(List<? extends T> items) {
+    List<List<Integer>> partitionedIndexes = new ArrayList<>(partitions);
+    for (int i = 0; i < partitions; i++) {
+      partitionedIndexes.add(new ArrayList<>());
+    }
+    for (int i = 0; i < items.size(); i++) {
+      Object key = partitionKeyConverter.convert(items.get(i));
+      partitionedIndexes.get(key == null ? 0 : Math.floorMod(key.hashCode(), partitions)).add(i);
+    }
+    return partitionedIndexes.stream().filter(indexes -> !indexes.isEmpty())
+        .map(indexes -> indexes.stream().mapToInt(Integer::intValue).toArray()).collect(Collectors.toList());
+  }
 
-        int[] updateCounts = results.get(0).getUpdateCounts();
+  private void writePartitions(List<? extends T> items, List<int[]> partitionedIndexes) {
+    List<PartitionWrite> partitionWrites = new ArrayList<>(partitionedIndexes.size());
+    for (int[] itemIndexes : partitionedIndexes) {
+      PartitionWrite partitionWrite = new PartitionWrite(items, itemIndexes);
+      try {
+        taskExecutor.execute(partitionWrite);
+      } catch (RuntimeException e) {
+        completePartitions(partitionWrites, false);
+        throw e;
+      }
+      partitionWrites.add(partitionWrite);
+    }
 
-        for (int i = 0; i < updateCounts.length; i++) {
-          int value = updateCounts[i];
-          if (value == 0) {
-            throw new EmptyResultDataAccessException("Item " + i + " of " + updateCounts.length
-                + " did not update any rows: [" + items.getItems().get(i) + "]", 1);
+    // 超时仍未开始执行的分区被取消，避免线程被同一chunk的其他分区占满时一直等待
+    long deadline = System.nanoTime() + partitionStartTimeout.toNanos();
+    partitionWrites.forEach(partitionWrite -> partitionWrite.awaitStarted(deadline));
+
+    // 等待所有分区flush并校验完成，任意一个分区失败则全部回滚
+    RuntimeException failure = null;
+    for (PartitionWrite partitionWrite : partitionWrites) {
+      RuntimeException partitionFailure = partitionWrite.awaitWritten();
+      if (failure == null) {
+        failure = partitionFailure;
+      }
+    }
+    if (failure != null) {
+      completePartitions(partitionWrites, false);
+      throw failure;
+    }
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      // 在chunk事务提交之前提交分区事务，分区提交失败时chunk事务还能回滚
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+        private boolean completed;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+          completed = true;
+          RuntimeException completionFailure = completePartitions(partitionWrites, true);
+          if (completionFailure != null) {
+            throw completionFailure;
           }
         }
+
+        @Override
+        public void afterCompletion(int status) {
+          if (completed) {
+            return;
+          }
+          RuntimeException completionFailure = completePartitions(partitionWrites, false);
+          if (completionFailure != null) {
+            LOGGER.warn(() -> "Could not roll back the partition transactions of a chunk. Cause by "
+                + completionFailure.toString());
+          }
+        }
+      });
+    } else {
+      RuntimeException completionFailure = completePartitions(partitionWrites, true);
+      if (completionFailure != null) {
+        throw completionFailure;
+      }
+    }
+  }
+
+  private RuntimeException completePartitions(List<PartitionWrite> partitionWrites, boolean commit) {
+    partitionWrites.forEach(partitionWrite -> {
+      partitionWrite.cancel(new IllegalStateException("The partition was cancelled before it started"));
+      partitionWrite.outcome.complete(commit);
+    });
+    RuntimeException failure = null;
+    for (PartitionWrite partitionWrite : partitionWrites) {
+      RuntimeException partitionFailure = partitionWrite.awaitCompleted();
+      if (failure == null) {
+        failure = partitionFailure;
+      }
+    }
+    return failure;
+  }
+
+  /**
+   * Checks the results of one flush, which executed the items from {@code executionOrder[from]} to
+   * {@code executionOrder[to - 1]}.
+   */
+  private void assertUpdateCounts(List<BatchResult> results, List<? extends T> items, String[] statementIds,
+      int[] executionOrder, int from, int to) {
+    if (statementIdClassifier == null) {
+      if (results.size() != 1) {
+        throw new InvalidDataAccessResourceUsageException("Batch execution returned invalid results. "
+            + "Expected 1 but number of BatchResult objects returned was " + results.size());
+      }
+    } else {
+      int updateCountSize = results.stream().mapToInt(result -> result.getUpdateCounts().length).sum();
+      if (updateCountSize != to - from) {
+        throw new InvalidDataAccessResourceUsageException("Batch execution returned invalid results. Expected "
+            + (to - from) + " update counts but number returned was " + updateCountSize);
+      }
+    }
+
+    // BatchResult与执行顺序一致，依次对应executionOrder中的item
+    int position = from;
+    for (BatchResult result : results) {
+      for (int value : result.getUpdateCounts()) {
+        if (position == to) {
+          return;
+        }
+        int index = executionOrder[position++];
+        if (value == 0) {
+          throw new EmptyResultDataAccessException("Item " + index + " of " + items.size()
+              + " did not update any rows"
+              + (statementIdClassifier == null ? "" : " with statement '" + statementIds[index] + "'") + ": ["
+              + items.get(index) + "]", 1);
+        }
       }
     }
   }
 
+  /**
+   * Writes one partition in its own transaction on a thread of the task executor, then keeps the transaction open until
+   * the outcome of the chunk is known.
+   */
+  private final class PartitionWrite implements Runnable {
+
+    private final List<? extends T> items;
+
+    private final int[] itemIndexes;
+
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+    private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+
+    private final CompletableFuture<Void> completed = new CompletableFuture<>();
+
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private PartitionWrite(List<? extends T> items, int[] itemIndexes) {
+      this.items = items;
+      this.itemIndexes = itemIndexes;
+    }
+
+    @Override
+    public void run() {
+      // 已被取消的分区不再执行
+      if (!claimed.compareAndSet(false, true)) {
+        return;
+      }
+      started.countDown();
+      TransactionStatus status;
+      try {
+        status = transactionManager.getTransaction(TransactionDefinition.withDefaults());
+      } catch (RuntimeException | Error e) {
+        written.completeExceptionally(e);
+        completed.complete(null);
+        return;
+      }
+      try {
+        LOGGER.debug(() -> "Writing partition with " + itemIndexes.length + " items.");
+        writeItems(items, itemIndexes);
+        written.complete(null);
+      } catch (RuntimeException | Error e) {
+        written.completeExceptionally(e);
+      }
+      try {
+        // 事务绑定在当前线程上，所以提交或回滚也必须在这个线程上执行
+        if (written.isCompletedExceptionally() || !outcome.join()) {
+          transactionManager.rollback(status);
+        } else {
+          transactionManager.commit(status);
+        }
+        completed.complete(null);
+      } catch (RuntimeException | Error e) {
+        completed.completeExceptionally(e);
+      }
+    }
+
+    /**
+     * Waits until the partition has started, and cancels it if it has not started before the deadline.
+     */
+    private void awaitStarted(long deadline) {
+      try {
+        if (started.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          return;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      cancel(new IllegalStateException("The partition did not start within " + partitionStartTimeout
+          + ". The taskExecutor must be able to run " + partitions + " tasks at the same time."));
+    }
+
+    /**
+     * Cancels the partition if it has not started yet, so that it is neither written nor waited for.
+     */
+    private void cancel(RuntimeException cause) {
+      if (claimed.compareAndSet(false, true)) {
+        written.completeExceptionally(cause);
+        completed.complete(null);
+      }
+    }
+
+    private RuntimeException awaitWritten() {
+      return await(written);
+    }
+
+    private RuntimeException awaitCompleted() {
+      return await(completed);
+    }
+
+    private RuntimeException await(CompletableFuture<Void> future) {
+      try {
+        future.join();
+        return null;
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        return cause instanceof RuntimeException ? (RuntimeException) cause
+            : new IllegalStateException("Failed to write a partition", cause);
+      }
+    }
+
+  }
+
   private static class PassThroughConverter<T> implements Converter<T, T> {
 
     @Override
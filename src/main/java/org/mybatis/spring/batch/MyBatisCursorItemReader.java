@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,27 +16,72 @@
 package org.mybatis.spring.batch;
 
 import static org.springframework.util.Assert.notNull;
+import static org.springframework.util.Assert.state;
 import static org.springframework.util.ClassUtils.getShortName;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.Transaction;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 
 /**
+ * {@code org.springframework.batch.item.ItemReader} for reading database records using a MyBatis {@code Cursor}.
+ * <p>
+ * On restart the rows that were already read are not read and mapped again. When a {@code sortKeyConverter} is set,
+ * the key of the last read item is saved in the {@code ExecutionContext} and passed to the query as {@code _lastKey}
+ * ({@code null} on the first run), so that the query can seek past it (e.g. {@code WHERE id > #{_lastKey} ORDER BY
+ * id}). Otherwise the cursor is opened with a {@code RowBounds} offset, and MyBatis skips the rows on the
+ * {@code ResultSet} without mapping them. Without a saved position, the offset is the one set with
+ * {@code setCurrentItemCount}.
+ * <p>
+ * The {@code fetchSize}, {@code resultSetType} and {@code connectionAutoCommit} options let drivers that would load the
+ * whole result into memory stream it instead, so that memory stays constant on large results. With a
+ * {@code queueCapacity}, the rows are fetched and mapped on a producer thread while the items are processed.
+ *
  * @author Guillaume Darmont / guillaume@dropinocean.com
  */
 public class MyBatisCursorItemReader<T> extends AbstractItemCountingItemStreamItemReader<T>
     implements InitializingBean {
 
+  private static final String LAST_KEY = "last.key";
+
+  // 与AbstractItemCountingItemStreamItemReader保存读取数量时使用的key相同
+  private static final String READ_COUNT = "read.count";
+
+  private static final Object END_OF_CURSOR = new Object();
+
   private String queryId;
 
   private SqlSessionFactory sqlSessionFactory;
@@ -48,19 +93,113 @@ public class MyBatisCursorItemReader<T> extends AbstractItemCountingItemStreamIt
   private Cursor<T> cursor;
   private Iterator<T> cursorIterator;
 
+  private Converter<T, ?> sortKeyConverter;
+  private Object lastKey;
+  private T lastItem;
+  private int skipRows;
+
+  private Integer fetchSize;
+  private ResultSetType resultSetType;
+  private Boolean connectionAutoCommit;
+  private Boolean initialConnectionAutoCommit;
+  private MappedStatement cursorStatement;
+
+  private int queueCapacity;
+  private TaskExecutor taskExecutor;
+  private BlockingQueue<Object> rowQueue;
+  private CountDownLatch producerDone;
+  private AtomicBoolean producerStarted;
+  private volatile boolean producerClosed;
+  private volatile Throwable producerFailure;
+  private boolean queueExhausted;
+
   public MyBatisCursorItemReader() {
     setName(getShortName(MyBatisCursorItemReader.class));
   }
 
   @Override
   protected T doRead() throws Exception {
+    if (rowQueue != null) {
+      return takeFromQueue();
+    }
     T next = null;
     if (cursorIterator.hasNext()) {
       next = cursorIterator.next();
+      lastItem = next;
     }
     return next;
   }
 
+  @SuppressWarnings("unchecked")
+  private T takeFromQueue() throws Exception {
+    if (queueExhausted) {
+      return null;
+    }
+    Object next = rowQueue.take();
+    if (next == END_OF_CURSOR) {
+      queueExhausted = true;
+      Throwable failure = producerFailure;
+      if (failure instanceof Exception) {
+        throw (Exception) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      return null;
+    }
+    lastItem = (T) next;
+    return lastItem;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void open(ExecutionContext executionContext) {
+    lastKey = null;
+    lastItem = null;
+    skipRows = 0;
+    if (isSaveState()) {
+      // 父类在doOpen之后才调用jumpToItem，所以在打开游标之前先取出重启的位置
+      if (sortKeyConverter != null) {
+        lastKey = executionContext.get(getExecutionContextKey(LAST_KEY));
+      }
+      // 与父类一样，没有保存的read.count时使用setCurrentItemCount设置的位置
+      if (lastKey == null) {
+        skipRows = executionContext.containsKey(getExecutionContextKey(READ_COUNT))
+            ? executionContext.getInt(getExecutionContextKey(READ_COUNT)) : getCurrentItemCount();
+      }
+    }
+    super.open(executionContext);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void update(ExecutionContext executionContext) {
+    super.update(executionContext);
+    if (sortKeyConverter != null && isSaveState()) {
+      Object key = lastItem == null ? lastKey : sortKeyConverter.convert(lastItem);
+      if (key != null) {
+        executionContext.put(getExecutionContextKey(LAST_KEY), key);
+      }
+    }
+  }
+
+  /**
+   * Reads only the items before {@code itemIndex} that the cursor opened by {@link #doOpen()} did not already skip
+   * with the last key or the {@code RowBounds}.
+   */
+  @Override
+  protected void jumpToItem(int itemIndex) throws Exception {
+    // 游标已经通过_lastKey或者RowBounds跳过了已读的行，只逐行读取剩下的部分
+    int skippedItems = lastKey != null ? itemIndex : skipRows;
+    for (int i = skippedItems; i < itemIndex; i++) {
+      doRead();
+    }
+  }
+
   @Override
   protected void doOpen() throws Exception {
     Map<String, Object> parameters = new HashMap<>();
@@ -70,20 +209,203 @@ public class MyBatisCursorItemReader<T> extends AbstractItemCountingItemStreamIt
 
     Optional.ofNullable(parameterValuesSupplier).map(Supplier::get).ifPresent(parameters::putAll);
 
-    sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE);
-    cursor = sqlSession.selectCursor(queryId, parameters);
+    if (sortKeyConverter != null) {
+      parameters.put("_lastKey", lastKey);
+    }
+
+    if (queueCapacity > 0) {
+      Configuration configuration = sqlSessionFactory.getConfiguration();
+      // 延迟加载在读取线程上执行，会与生产者线程同时使用同一个Executor
+      state(!configuration.hasStatement(queryId) || !hasLazyLoading(configuration,
+          configuration.getMappedStatement(queryId).getResultMaps(), new HashSet<>()),
+          () -> "Lazy loading is not supported with a queueCapacity, but statement '" + queryId
+              + "' has lazy loaded properties.");
+    }
+
+    if (fetchSize == null && resultSetType == null) {
+      sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE);
+      overrideConnectionAutoCommit();
+      if (skipRows > 0) {
+        cursor = sqlSession.selectCursor(queryId, parameters, new RowBounds(skipRows, RowBounds.NO_ROW_LIMIT));
+      } else {
+        cursor = sqlSession.selectCursor(queryId, parameters);
+      }
+    } else {
+      // SqlSession只能按id执行配置中的statement，所以用带有fetchSize和resultSetType的副本直接调用Executor
+      Configuration configuration = sqlSessionFactory.getConfiguration();
+      Environment environment = configuration.getEnvironment();
+      Transaction transaction = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null,
+          false);
+      Executor executor = configuration.newExecutor(transaction, ExecutorType.SIMPLE);
+      sqlSession = new DefaultSqlSession(configuration, executor);
+      overrideConnectionAutoCommit();
+      if (cursorStatement == null) {
+        cursorStatement = createCursorStatement(configuration.getMappedStatement(queryId));
+      }
+      cursor = executor.queryCursor(cursorStatement, parameters,
+          skipRows > 0 ? new RowBounds(skipRows, RowBounds.NO_ROW_LIMIT) : RowBounds.DEFAULT);
+    }
     cursorIterator = cursor.iterator();
+    if (queueCapacity > 0) {
+      startProducer();
+    }
+  }
+
+  private void startProducer() {
+    if (taskExecutor == null) {
+      SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("mybatis-cursor-reader-");
+      // JDK 21以上使用虚拟线程，读取游标时线程大部分时间在等待数据库
+      executor.setVirtualThreads(Runtime.version().feature() >= 21);
+      taskExecutor = executor;
+    }
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueCapacity);
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicBoolean started = new AtomicBoolean();
+    Iterator<T> iterator = cursorIterator;
+    producerClosed = false;
+    producerFailure = null;
+    queueExhausted = false;
+    rowQueue = queue;
+    producerDone = done;
+    producerStarted = started;
+    try {
+      taskExecutor.execute(() -> {
+        // 关闭时还没有开始执行的生产者不再执行
+        if (started.compareAndSet(false, true)) {
+          produce(iterator, queue, done);
+        }
+      });
+    } catch (RuntimeException e) {
+      started.set(true);
+      done.countDown();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns whether the result maps, or the result maps nested in them, have a lazy loaded nested query.
+   */
+  private static boolean hasLazyLoading(Configuration configuration, Collection<ResultMap> resultMaps,
+      Set<String> visited) {
+    for (ResultMap resultMap : resultMaps) {
+      if (!visited.add(resultMap.getId())) {
+        continue;
+      }
+      Set<ResultMap> nestedResultMaps = new HashSet<>();
+      for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+        if (resultMapping.getNestedQueryId() != null && resultMapping.isLazy()) {
+          return true;
+        }
+        if (resultMapping.getNestedResultMapId() != null) {
+          nestedResultMaps.add(configuration.getResultMap(resultMapping.getNestedResultMapId()));
+        }
+      }
+      if (resultMap.getDiscriminator() != null) {
+        resultMap.getDiscriminator().getDiscriminatorMap().values()
+            .forEach(resultMapId -> nestedResultMaps.add(configuration.getResultMap(resultMapId)));
+      }
+      if (hasLazyLoading(configuration, nestedResultMaps, visited)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Moves the rows of the cursor into the queue until the cursor is exhausted or the reader is closed, blocking while
+   * the queue is full.
+   */
+  private void produce(Iterator<T> iterator, BlockingQueue<Object> queue, CountDownLatch done) {
+    try {
+      while (!producerClosed && iterator.hasNext()) {
+        T item = iterator.next();
+        if (item == null) {
+          break;
+        }
+        queue.put(item);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      producerFailure = e;
+    } catch (Throwable e) {
+      producerFailure = e;
+    } finally {
+      try {
+        if (!producerClosed) {
+          queue.put(END_OF_CURSOR);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        done.countDown();
+      }
+    }
+  }
+
+  private void stopProducer() throws InterruptedException {
+    if (rowQueue == null) {
+      return;
+    }
+    // 清空队列让阻塞在put上的生产者继续执行，它看到producerClosed后就会退出，之后才能在当前线程关闭游标
+    producerClosed = true;
+    // 生产者还在taskExecutor的队列中没有开始执行时，直接结束等待
+    if (producerStarted.compareAndSet(false, true)) {
+      producerDone.countDown();
+    }
+    do {
+      rowQueue.clear();
+    } while (!producerDone.await(10, TimeUnit.MILLISECONDS));
+    rowQueue = null;
+    producerDone = null;
+    producerStarted = null;
+  }
+
+  private void overrideConnectionAutoCommit() throws SQLException {
+    if (connectionAutoCommit != null) {
+      Connection connection = sqlSession.getConnection();
+      if (connection.getAutoCommit() != connectionAutoCommit) {
+        connection.setAutoCommit(connectionAutoCommit);
+        initialConnectionAutoCommit = !connectionAutoCommit;
+      }
+    }
+  }
+
+  /**
+   * Returns a copy of the statement with the {@code fetchSize} and the {@code resultSetType} of this reader.
+   */
+  private MappedStatement createCursorStatement(MappedStatement statement) {
+    return new MappedStatement.Builder(statement.getConfiguration(), statement.getId(), statement.getSqlSource(),
+        statement.getSqlCommandType()).resource(statement.getResource()).parameterMap(statement.getParameterMap())
+        .resultMaps(statement.getResultMaps())
+        .fetchSize(fetchSize == null ? statement.getFetchSize() : fetchSize).timeout(statement.getTimeout())
+        .statementType(statement.getStatementType())
+        .resultSetType(resultSetType == null ? statement.getResultSetType() : resultSetType)
+        .cache(statement.getCache()).flushCacheRequired(statement.isFlushCacheRequired())
+        .useCache(statement.isUseCache()).resultOrdered(statement.isResultOrdered())
+        .keyGenerator(statement.getKeyGenerator()).keyProperty(join(statement.getKeyProperties()))
+        .keyColumn(join(statement.getKeyColumns())).databaseId(statement.getDatabaseId()).lang(statement.getLang())
+        .resultSets(join(statement.getResultSets())).dirtySelect(statement.isDirtySelect()).build();
+  }
+
+  private static String join(String[] values) {
+    return values == null ? null : String.join(",", values);
   }
 
   @Override
   protected void doClose() throws Exception {
+    stopProducer();
     if (cursor != null) {
       cursor.close();
     }
     if (sqlSession != null) {
+      if (initialConnectionAutoCommit != null) {
+        sqlSession.getConnection().setAutoCommit(initialConnectionAutoCommit);
+        initialConnectionAutoCommit = null;
+      }
       sqlSession.close();
     }
     cursorIterator = null;
+    lastItem = null;
   }
 
   /**
@@ -138,4 +460,100 @@ public class MyBatisCursorItemReader<T> extends AbstractItemCountingItemStreamIt
   public void setParameterValuesSupplier(Supplier<Map<String, Object>> parameterValuesSupplier) {
     this.parameterValuesSupplier = parameterValuesSupplier;
   }
+
+  /**
+   * Public setter for a converter that returns the sort key of an item, which lets a restart seek past the last read
+   * item.
+   * <p>
+   * The key of the last read item is saved in the {@code ExecutionContext}, so it must be serializable by the job
+   * repository, and passed to the query as the {@code _lastKey} parameter on restart. The query must be ordered by
+   * that key, and the key must be unique.
+   *
+   * @param sortKeyConverter
+   *          a converter that returns the sort key of an item
+   *
+   * @since 3.0.4
+   */
+  public void setSortKeyConverter(Converter<T, ?> sortKeyConverter) {
+    this.sortKeyConverter = sortKeyConverter;
+  }
+
+  /**
+   * Public setter for the number of rows the driver fetches from the database at a time. Defaults to the fetch size of
+   * the statement, or to the default fetch size of the {@code Configuration}.
+   * <p>
+   * Set it when the driver loads the whole result into memory otherwise, e.g. {@code Integer.MIN_VALUE} to stream
+   * rows with MySQL, or a positive value with PostgreSQL and {@code connectionAutoCommit} set to {@code false}.
+   *
+   * @param fetchSize
+   *          the number of rows fetched at a time
+   *
+   * @since 3.0.4
+   */
+  public void setFetchSize(Integer fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Public setter for the type of the {@code ResultSet}, e.g. {@code FORWARD_ONLY}, which some drivers need to stream
+   * rows. The {@code ResultSet} is always read-only. Defaults to the result set type of the statement.
+   *
+   * @param resultSetType
+   *          the type of the {@code ResultSet}
+   *
+   * @since 3.0.4
+   */
+  public void setResultSetType(ResultSetType resultSetType) {
+    this.resultSetType = resultSetType;
+  }
+
+  /**
+   * Public setter for the auto-commit mode of the connection of the cursor while it is open, e.g. {@code false} for
+   * PostgreSQL, which only uses the fetch size outside of auto-commit mode. The original mode is restored when the
+   * reader is closed. Defaults to the mode of the connection.
+   *
+   * @param connectionAutoCommit
+   *          the auto-commit mode of the connection
+   *
+   * @since 3.0.4
+   */
+  public void setConnectionAutoCommit(Boolean connectionAutoCommit) {
+    this.connectionAutoCommit = connectionAutoCommit;
+  }
+
+  /**
+   * Public setter for the capacity of the queue between the cursor and the reader. Defaults to 0, which reads the
+   * cursor on the calling thread.
+   * <p>
+   * With a capacity, a producer thread of the {@code taskExecutor} fetches and maps the rows of the cursor into a
+   * queue of that size while the items are processed, and waits while the queue is full. A failure of the cursor is
+   * thrown by the read that reaches it. Closing the reader stops the producer before it closes the cursor, or cancels
+   * it if the {@code taskExecutor} has not started it yet. The cursor must be opened outside a transaction, as a step
+   * opens its readers, so that its connection is not shared with the writer.
+   * <p>
+   * Lazy loading is not supported in this mode, because lazy loaded properties would run their queries on the reading
+   * thread with the {@code Executor} the producer is using: opening the reader fails if the statement has a lazy nested
+   * query, either with {@code lazyLoadingEnabled} or with {@code fetchType="lazy"}.
+   *
+   * @param queueCapacity
+   *          the number of rows read ahead
+   *
+   * @since 3.0.4
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Public setter for the {@link TaskExecutor} that runs the producer thread when {@code queueCapacity} is set.
+   * Defaults to a new thread per open, which is a virtual thread on JDK 21 and later.
+   *
+   * @param taskExecutor
+   *          the executor that runs the producer
+   *
+   * @since 3.0.4
+   */
+  public void setTaskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+  }
 }
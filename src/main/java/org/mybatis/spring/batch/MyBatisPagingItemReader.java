@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,22 +18,35 @@ package org.mybatis.spring.batch;
 import static org.springframework.util.Assert.notNull;
 import static org.springframework.util.ClassUtils.getShortName;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.function.Supplier;
 
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.database.AbstractPagingItemReader;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.TaskExecutor;
 
 /**
  * {@code org.springframework.batch.item.ItemReader} for reading database records using MyBatis in a paging fashion.
  * <p>
  * Provided to facilitate the migration from Spring-Batch iBATIS 2 page item readers to MyBatis 3.
+ * <p>
+ * Each query receives the {@code _page}, {@code _pagesize} and {@code _skiprows} parameters for offset based paging.
+ * When a {@code sortKeyConverter} is set, the reader also passes the sort key of the last item of the previous page as
+ * {@code _lastKey} ({@code null} for the first page), so that the query can seek past it (e.g.
+ * {@code WHERE id > #{_lastKey} ORDER BY id}) and each page costs the same however deep it is.
  *
  * @author Eduardo Macarron
  *
@@ -41,6 +54,8 @@ import org.springframework.batch.item.database.AbstractPagingItemReader;
  */
 public class MyBatisPagingItemReader<T> extends AbstractPagingItemReader<T> {
 
+  private static final String LAST_KEY = "last.key";
+
   private String queryId;
 
   private SqlSessionFactory sqlSessionFactory;
@@ -51,6 +66,22 @@ public class MyBatisPagingItemReader<T> extends AbstractPagingItemReader<T> {
 
   private Supplier<Map<String, Object>> parameterValuesSupplier;
 
+  private Converter<T, ?> sortKeyConverter;
+
+  private Object lastKey;
+
+  private Object previousLastKey;
+
+  private int prefetchPages;
+
+  private TaskExecutor taskExecutor;
+
+  private Deque<CompletableFuture<Page<T>>> prefetchedPages;
+
+  private CompletableFuture<Page<T>> lastPrefetchedPage;
+
+  private int nextPrefetchedPageNumber;
+
   public MyBatisPagingItemReader() {
     setName(getShortName(MyBatisPagingItemReader.class));
   }
@@ -97,6 +128,55 @@ public class MyBatisPagingItemReader<T> extends AbstractPagingItemReader<T> {
     this.parameterValuesSupplier = parameterValuesSupplier;
   }
 
+  /**
+   * Public setter for a converter that returns the sort key of an item, which enables keyset paging.
+   * <p>
+   * The key of the last item of each page is passed to the next query as the {@code _lastKey} parameter. The query must
+   * be ordered by that key, and the key must be unique, e.g. the primary key or a {@code Map} of the columns of a
+   * composite key. When the state is saved, the key of the page being read is stored in the {@code ExecutionContext},
+   * so it must be serializable by the job repository.
+   *
+   * @param sortKeyConverter
+   *          a converter that returns the sort key of an item
+   *
+   * @since 3.0.4
+   */
+  public void setSortKeyConverter(Converter<T, ?> sortKeyConverter) {
+    this.sortKeyConverter = sortKeyConverter;
+  }
+
+  /**
+   * Public setter for the number of pages loaded ahead of the page being read. Defaults to 0, which queries each page
+   * when the previous one is used up.
+   * <p>
+   * With read-ahead, the pages are queried one after another on the {@code taskExecutor} while the items of the current
+   * page are processed, so at most {@code prefetchPages + 1} pages are held in memory. Each query runs on its own
+   * {@code SqlSession} and connection, outside the transaction of the step. A page with less than {@code pageSize}
+   * items is the last one. Pages loaded ahead are not part of the saved state, so the restart behavior is the same as
+   * without read-ahead.
+   *
+   * @param prefetchPages
+   *          the number of pages loaded ahead
+   *
+   * @since 3.0.4
+   */
+  public void setPrefetchPages(int prefetchPages) {
+    this.prefetchPages = prefetchPages;
+  }
+
+  /**
+   * Public setter for the {@link TaskExecutor} that loads pages ahead. Required when {@code prefetchPages} is greater
+   * than 0.
+   *
+   * @param taskExecutor
+   *          the executor that runs the page queries
+   *
+   * @since 3.0.4
+   */
+  public void setTaskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+  }
+
   /**
    * Check mandatory properties.
    *
@@ -107,6 +187,51 @@ public class MyBatisPagingItemReader<T> extends AbstractPagingItemReader<T> {
     super.afterPropertiesSet();
     notNull(sqlSessionFactory, "A SqlSessionFactory is required.");
     notNull(queryId, "A queryId is required.");
+    if (prefetchPages > 0) {
+      notNull(taskExecutor, "A taskExecutor is required when prefetchPages is greater than 0.");
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void open(ExecutionContext executionContext) {
+    if (sortKeyConverter != null && isSaveState()) {
+      // 必须在父类调用jumpToItem之前恢复，重启后读取的第一页以它为起点
+      lastKey = executionContext.get(getExecutionContextKey(LAST_KEY));
+    }
+    super.open(executionContext);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void update(ExecutionContext executionContext) {
+    super.update(executionContext);
+    if (sortKeyConverter != null && isSaveState()) {
+      // 当前页已读完时保存下一页的起点，否则保存当前页的起点
+      // 重启后由jumpToItem跳过页内已读的item
+      Object key = getCurrentItemCount() % getPageSize() == 0 ? lastKey : previousLastKey;
+      if (key == null) {
+        executionContext.remove(getExecutionContextKey(LAST_KEY));
+      } else {
+        executionContext.put(getExecutionContextKey(LAST_KEY), key);
+      }
+    }
+  }
+
+  @Override
+  protected void doClose() throws Exception {
+    if (prefetchedPages != null) {
+      prefetchedPages.forEach(page -> page.cancel(false));
+      prefetchedPages = null;
+      lastPrefetchedPage = null;
+    }
+    lastKey = null;
+    previousLastKey = null;
+    super.doClose();
   }
 
   @Override
@@ -114,20 +239,99 @@ public class MyBatisPagingItemReader<T> extends AbstractPagingItemReader<T> {
     if (sqlSessionTemplate == null) {
       sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
     }
+    // 查询前先释放上一页，查询返回的List直接作为当前页，不再复制到CopyOnWriteArrayList
+    // results是volatile的，父类只在持有锁时读取它，所以直接替换引用就是线程安全的
+    results = null;
+    Page<T> page = prefetchPages > 0 ? nextPrefetchedPage() : queryPage(createParameters(), getPage(), lastKey);
+    results = page.items;
+    previousLastKey = lastKey;
+    lastKey = page.lastKey;
+  }
+
+  private Map<String, Object> createParameters() {
     Map<String, Object> parameters = new HashMap<>();
     if (parameterValues != null) {
       parameters.putAll(parameterValues);
     }
     Optional.ofNullable(parameterValuesSupplier).map(Supplier::get).ifPresent(parameters::putAll);
-    parameters.put("_page", getPage());
+    return parameters;
+  }
+
+  private Page<T> queryPage(Map<String, Object> parameters, int page, Object startKey) {
+    parameters.put("_page", page);
     parameters.put("_pagesize", getPageSize());
-    parameters.put("_skiprows", getPage() * getPageSize());
-    if (results == null) {
-      results = new CopyOnWriteArrayList<>();
-    } else {
-      results.clear();
+    parameters.put("_skiprows", page * getPageSize());
+    if (sortKeyConverter != null) {
+      parameters.put("_lastKey", startKey);
     }
-    results.addAll(sqlSessionTemplate.selectList(queryId, parameters));
+    List<T> items = sqlSessionTemplate.selectList(queryId, parameters);
+    Object endKey = sortKeyConverter == null || items.isEmpty() ? startKey
+        : sortKeyConverter.convert(items.get(items.size() - 1));
+    return new Page<>(items, endKey);
+  }
+
+  /**
+   * Returns the page to read now, and keeps {@code prefetchPages} pages after it loading in the background.
+   */
+  private Page<T> nextPrefetchedPage() {
+    if (prefetchedPages == null) {
+      // 从当前页开始预读，重启时jumpToItem已经设置好了页号和起始key
+      prefetchedPages = new ArrayDeque<>(prefetchPages + 1);
+      lastPrefetchedPage = CompletableFuture.completedFuture(new Page<>(null, lastKey));
+      nextPrefetchedPageNumber = getPage();
+    }
+    while (prefetchedPages.size() <= prefetchPages) {
+      prefetchPage();
+    }
+    try {
+      return prefetchedPages.poll().join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  private void prefetchPage() {
+    // 参数在调用线程上准备，查询在taskExecutor上执行
+    // 每一页在上一页查询完成后开始，keyset模式需要上一页的最后一个key
+    Map<String, Object> parameters = createParameters();
+    int page = nextPrefetchedPageNumber++;
+    lastPrefetchedPage = lastPrefetchedPage.thenApplyAsync(previous -> queryPageAfter(previous, parameters, page),
+        taskExecutor);
+    prefetchedPages.add(lastPrefetchedPage);
+  }
+
+  private Page<T> queryPageAfter(Page<T> previous, Map<String, Object> parameters, int page) {
+    if (previous.isLast(getPageSize())) {
+      return new Page<>(Collections.emptyList(), previous.lastKey);
+    }
+    return queryPage(parameters, page, previous.lastKey);
+  }
+
+  private static final class Page<T> {
+
+    private final List<T> items;
+
+    private final Object lastKey;
+
+    private Page(List<T> items, Object lastKey) {
+      this.items = items;
+      this.lastKey = lastKey;
+    }
+
+    /**
+     * Returns whether no page follows this one. A short page is the last one, so the next page is not queried.
+     */
+    private boolean isLast(int pageSize) {
+      return items != null && items.size() < pageSize;
+    }
+
   }
 
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.batch;
+
+import static org.springframework.util.Assert.isInstanceOf;
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+import static org.springframework.util.Assert.state;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * {@code Partitioner} that splits the keys of a table into ranges with a boundary query executed by MyBatis.
+ * <p>
+ * The boundary query receives the {@code parameterValues} and the {@code _gridSize} parameter, and returns either:
+ * <ul>
+ * <li>one row with the {@code minValue} and {@code maxValue} columns, e.g.
+ * {@code SELECT MIN(id) AS minValue, MAX(id) AS maxValue FROM foo} with {@code resultType="map"}. The numeric range is
+ * split into {@code gridSize} ranges of the same width.</li>
+ * <li>the first key of each partition in ascending order, e.g. the smallest key of each
+ * {@code NTILE(#{_gridSize}) OVER (ORDER BY id)} group. The partitions then hold the same number of rows even if the
+ * keys are not evenly distributed.</li>
+ * </ul>
+ * Each {@code ExecutionContext} holds the inclusive {@code minValue} and the exclusive {@code maxValue} of a
+ * partition. The last partition has no {@code maxValue}, so that it also reads the keys added after the boundary
+ * query, and the query of a partitioned reader looks like:
+ *
+ * <pre class="code">
+ * WHERE id &gt;= #{minValue} &lt;if test="maxValue != null"&gt;AND id &lt; #{maxValue}&lt;/if&gt;
+ * </pre>
+ *
+ * A step scoped {@link MyBatisCursorItemReader} or {@link MyBatisPagingItemReader} passes them to its query with its
+ * {@code parameterValues} or {@code parameterValuesSupplier}, e.g. from {@code #{stepExecutionContext['minValue']}}.
+ *
+ * @since 3.0.4
+ */
+public class MyBatisPartitioner implements Partitioner, InitializingBean {
+
+  /**
+   * The key of the inclusive lower bound of a partition in its {@code ExecutionContext}.
+   */
+  public static final String MIN_VALUE = "minValue";
+
+  /**
+   * The key of the exclusive upper bound of a partition in its {@code ExecutionContext}.
+   */
+  public static final String MAX_VALUE = "maxValue";
+
+  private static final String PARTITION_PREFIX = "partition";
+
+  private String queryId;
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  private Map<String, Object> parameterValues;
+
+  /**
+   * Public setter for {@link SqlSessionFactory} for injection purposes.
+   *
+   * @param sqlSessionFactory
+   *          a factory object for the {@link SqlSession}.
+   */
+  public void setSqlSessionFactory(SqlSessionFactory sqlSessionFactory) {
+    this.sqlSessionFactory = sqlSessionFactory;
+  }
+
+  /**
+   * Public setter for the statement id identifying the boundary query in the SqlMap configuration file.
+   *
+   * @param queryId
+   *          the id for the statement
+   */
+  public void setQueryId(String queryId) {
+    this.queryId = queryId;
+  }
+
+  /**
+   * The parameter values to be used for the boundary query execution.
+   *
+   * @param parameterValues
+   *          the values keyed by the parameter named used in the query string.
+   */
+  public void setParameterValues(Map<String, Object> parameterValues) {
+    this.parameterValues = parameterValues;
+  }
+
+  /**
+   * Check mandatory properties.
+   *
+   * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+   */
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    notNull(sqlSessionFactory, "A SqlSessionFactory is required.");
+    notNull(queryId, "A queryId is required.");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Map<String, ExecutionContext> partition(int gridSize) {
+    isTrue(gridSize > 0, "The gridSize must be greater than 0.");
+    Map<String, Object> parameters = new HashMap<>();
+    if (parameterValues != null) {
+      parameters.putAll(parameterValues);
+    }
+    parameters.put("_gridSize", gridSize);
+
+    List<Object> boundaries;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.SIMPLE)) {
+      boundaries = sqlSession.selectList(queryId, parameters);
+    }
+
+    List<Object> minValues;
+    if (boundaries.size() == 1 && (boundaries.get(0) == null || boundaries.get(0) instanceof Map)) {
+      minValues = splitRange((Map<?, ?>) boundaries.get(0), gridSize);
+    } else {
+      minValues = boundaries;
+    }
+
+    Map<String, ExecutionContext> partitions = new LinkedHashMap<>();
+    for (int i = 0; i < minValues.size(); i++) {
+      ExecutionContext executionContext = new ExecutionContext();
+      executionContext.put(MIN_VALUE, minValues.get(i));
+      if (i + 1 < minValues.size()) {
+        executionContext.put(MAX_VALUE, minValues.get(i + 1));
+      }
+      partitions.put(PARTITION_PREFIX + i, executionContext);
+    }
+    return partitions;
+  }
+
+  /**
+   * Returns the lower bounds of at most {@code gridSize} ranges of the same width between the min and the max value.
+   * A table without keys has no range, but a row without the {@code minValue} and {@code maxValue} columns is an
+   * error, e.g. a misnamed alias, rather than a reason to process nothing.
+   */
+  private static List<Object> splitRange(Map<?, ?> range, int gridSize) {
+    if (range == null) {
+      // 表中没有数据时，MIN和MAX都是null，MyBatis默认会把这一行映射成null
+      return new ArrayList<>();
+    }
+    Map.Entry<?, ?> minEntry = getEntryIgnoreCase(range, MIN_VALUE);
+    Map.Entry<?, ?> maxEntry = getEntryIgnoreCase(range, MAX_VALUE);
+    state(minEntry != null && maxEntry != null, () -> "The boundary query must return the '" + MIN_VALUE + "' and '"
+        + MAX_VALUE + "' columns, but returned the columns " + range.keySet());
+    Object min = minEntry.getValue();
+    Object max = maxEntry.getValue();
+    if (min == null || max == null) {
+      // callSettersOnNulls时，空表的这一行包含值为null的列
+      return new ArrayList<>();
+    }
+    isInstanceOf(Number.class, min, "The minValue of the boundary query must be a number");
+    isInstanceOf(Number.class, max, "The maxValue of the boundary query must be a number");
+
+    long minValue = ((Number) min).longValue();
+    long maxValue = ((Number) max).longValue();
+    long width = (maxValue - minValue) / gridSize + 1;
+    List<Object> minValues = new ArrayList<>(gridSize);
+    for (long value = minValue; value <= maxValue && minValues.size() < gridSize; value += width) {
+      minValues.add(value);
+    }
+    return minValues;
+  }
+
+  private static Map.Entry<?, ?> getEntryIgnoreCase(Map<?, ?> row, String column) {
+    // 列名的大小写取决于数据库，比如Derby和Oracle会返回大写的列名
+    for (Map.Entry<?, ?> entry : row.entrySet()) {
+      if (column.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,7 +20,10 @@ import java.util.Optional;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.batch.MyBatisBatchItemWriter;
+import org.springframework.classify.Classifier;
 import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 /**
  * A builder for the {@link MyBatisBatchItemWriter}.
@@ -36,8 +39,14 @@ public class MyBatisBatchItemWriterBuilder<T> {
   private SqlSessionTemplate sqlSessionTemplate;
   private SqlSessionFactory sqlSessionFactory;
   private String statementId;
+  private Classifier<? super T, String> statementIdClassifier;
   private Boolean assertUpdates;
+  private Integer maxBatchSize;
   private Converter<T, ?> itemToParameterConverter;
+  private Integer partitions;
+  private Converter<T, ?> partitionKeyConverter;
+  private TaskExecutor taskExecutor;
+  private PlatformTransactionManager transactionManager;
 
   /**
    * Set the {@link SqlSessionTemplate} to be used by writer for database access.
@@ -84,6 +93,23 @@ public class MyBatisBatchItemWriterBuilder<T> {
     return this;
   }
 
+  /**
+   * Set a classifier that picks the statement id of each item.
+   *
+   * @param statementIdClassifier
+   *          a classifier that returns the statement id of an item
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setStatementIdClassifier(Classifier)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> statementIdClassifier(Classifier<? super T, String> statementIdClassifier) {
+    this.statementIdClassifier = statementIdClassifier;
+    return this;
+  }
+
   /**
    * The flag that determines whether an assertion is made that all items cause at least one row to be updated.
    *
@@ -99,6 +125,23 @@ public class MyBatisBatchItemWriterBuilder<T> {
     return this;
   }
 
+  /**
+   * Set the maximum number of items sent in one JDBC batch.
+   *
+   * @param maxBatchSize
+   *          the maximum number of items per JDBC batch. Defaults to 0, which sends a chunk as one batch
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setMaxBatchSize(int)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> maxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
   /**
    * Set a converter that converting item to parameter object.
    *
@@ -114,6 +157,74 @@ public class MyBatisBatchItemWriterBuilder<T> {
     return this;
   }
 
+  /**
+   * Set the number of partitions a chunk is split into and written concurrently.
+   *
+   * @param partitions
+   *          the number of partitions. Defaults to 1, which writes a chunk on the calling thread
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setPartitions(int)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> partitions(int partitions) {
+    this.partitions = partitions;
+    return this;
+  }
+
+  /**
+   * Set a converter that returns the partition key of an item.
+   *
+   * @param partitionKeyConverter
+   *          a converter that returns the partition key of an item
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setPartitionKeyConverter(Converter)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> partitionKeyConverter(Converter<T, ?> partitionKeyConverter) {
+    this.partitionKeyConverter = partitionKeyConverter;
+    return this;
+  }
+
+  /**
+   * Set the {@link TaskExecutor} that writes the partitions.
+   *
+   * @param taskExecutor
+   *          the executor that runs one task per partition
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setTaskExecutor(TaskExecutor)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> taskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+    return this;
+  }
+
+  /**
+   * Set the {@link PlatformTransactionManager} of the partition transactions.
+   *
+   * @param transactionManager
+   *          the transaction manager of the partition transactions
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisBatchItemWriter#setTransactionManager(PlatformTransactionManager)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisBatchItemWriterBuilder<T> transactionManager(PlatformTransactionManager transactionManager) {
+    this.transactionManager = transactionManager;
+    return this;
+  }
+
   /**
    * Returns a fully built {@link MyBatisBatchItemWriter}.
    *
@@ -124,8 +235,14 @@ public class MyBatisBatchItemWriterBuilder<T> {
     writer.setSqlSessionTemplate(this.sqlSessionTemplate);
     writer.setSqlSessionFactory(this.sqlSessionFactory);
     writer.setStatementId(this.statementId);
+    writer.setStatementIdClassifier(this.statementIdClassifier);
     Optional.ofNullable(this.assertUpdates).ifPresent(writer::setAssertUpdates);
+    Optional.ofNullable(this.maxBatchSize).ifPresent(writer::setMaxBatchSize);
     Optional.ofNullable(this.itemToParameterConverter).ifPresent(writer::setItemToParameterConverter);
+    Optional.ofNullable(this.partitions).ifPresent(writer::setPartitions);
+    writer.setPartitionKeyConverter(this.partitionKeyConverter);
+    writer.setTaskExecutor(this.taskExecutor);
+    writer.setTransactionManager(this.transactionManager);
     return writer;
   }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
 
+import org.apache.ibatis.mapping.ResultSetType;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.batch.MyBatisCursorItemReader;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.TaskExecutor;
 
 /**
  * A builder for the {@link MyBatisCursorItemReader}.
@@ -39,6 +42,12 @@ public class MyBatisCursorItemReaderBuilder<T> {
   private Supplier<Map<String, Object>> parameterValuesSupplier;
   private Boolean saveState;
   private Integer maxItemCount;
+  private Converter<T, ?> sortKeyConverter;
+  private Integer fetchSize;
+  private ResultSetType resultSetType;
+  private Boolean connectionAutoCommit;
+  private Integer queueCapacity;
+  private TaskExecutor taskExecutor;
 
   /**
    * Set the {@link SqlSessionFactory} to be used by reader for database access.
@@ -134,6 +143,108 @@ public class MyBatisCursorItemReaderBuilder<T> {
     return this;
   }
 
+  /**
+   * Set a converter that returns the sort key of an item, which lets a restart seek past the last read item.
+   *
+   * @param sortKeyConverter
+   *          a converter that returns the sort key of an item
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setSortKeyConverter(Converter)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> sortKeyConverter(Converter<T, ?> sortKeyConverter) {
+    this.sortKeyConverter = sortKeyConverter;
+    return this;
+  }
+
+  /**
+   * Set the number of rows the driver fetches from the database at a time.
+   *
+   * @param fetchSize
+   *          the number of rows fetched at a time
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setFetchSize(Integer)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> fetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+    return this;
+  }
+
+  /**
+   * Set the type of the {@code ResultSet}.
+   *
+   * @param resultSetType
+   *          the type of the {@code ResultSet}
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setResultSetType(ResultSetType)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> resultSetType(ResultSetType resultSetType) {
+    this.resultSetType = resultSetType;
+    return this;
+  }
+
+  /**
+   * Set the auto-commit mode of the connection of the cursor while it is open.
+   *
+   * @param connectionAutoCommit
+   *          the auto-commit mode of the connection
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setConnectionAutoCommit(Boolean)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> connectionAutoCommit(boolean connectionAutoCommit) {
+    this.connectionAutoCommit = connectionAutoCommit;
+    return this;
+  }
+
+  /**
+   * Set the capacity of the queue between the cursor and the reader.
+   *
+   * @param queueCapacity
+   *          the number of rows read ahead. Defaults to 0, which reads the cursor on the calling thread
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setQueueCapacity(int)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> queueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  /**
+   * Set the {@link TaskExecutor} that runs the producer thread.
+   *
+   * @param taskExecutor
+   *          the executor that runs the producer
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisCursorItemReader#setTaskExecutor(TaskExecutor)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisCursorItemReaderBuilder<T> taskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+    return this;
+  }
+
   /**
    * Returns a fully built {@link MyBatisCursorItemReader}.
    *
@@ -147,6 +258,12 @@ public class MyBatisCursorItemReaderBuilder<T> {
     reader.setParameterValuesSupplier(this.parameterValuesSupplier);
     Optional.ofNullable(this.saveState).ifPresent(reader::setSaveState);
     Optional.ofNullable(this.maxItemCount).ifPresent(reader::setMaxItemCount);
+    reader.setSortKeyConverter(this.sortKeyConverter);
+    reader.setFetchSize(this.fetchSize);
+    reader.setResultSetType(this.resultSetType);
+    reader.setConnectionAutoCommit(this.connectionAutoCommit);
+    Optional.ofNullable(this.queueCapacity).ifPresent(reader::setQueueCapacity);
+    reader.setTaskExecutor(this.taskExecutor);
     return reader;
   }
 
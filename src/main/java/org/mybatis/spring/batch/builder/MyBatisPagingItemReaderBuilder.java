@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,8 @@ import java.util.function.Supplier;
 
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.batch.MyBatisPagingItemReader;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.task.TaskExecutor;
 
 /**
  * A builder for the {@link MyBatisPagingItemReader}.
@@ -40,6 +42,9 @@ public class MyBatisPagingItemReaderBuilder<T> {
   private Integer pageSize;
   private Boolean saveState;
   private Integer maxItemCount;
+  private Converter<T, ?> sortKeyConverter;
+  private Integer prefetchPages;
+  private TaskExecutor taskExecutor;
 
   /**
    * Set the {@link SqlSessionFactory} to be used by writer for database access.
@@ -150,6 +155,57 @@ public class MyBatisPagingItemReaderBuilder<T> {
     return this;
   }
 
+  /**
+   * Set a converter that returns the sort key of an item, which enables keyset paging.
+   *
+   * @param sortKeyConverter
+   *          a converter that returns the sort key of an item
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPagingItemReader#setSortKeyConverter(Converter)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisPagingItemReaderBuilder<T> sortKeyConverter(Converter<T, ?> sortKeyConverter) {
+    this.sortKeyConverter = sortKeyConverter;
+    return this;
+  }
+
+  /**
+   * Set the number of pages loaded ahead of the page being read.
+   *
+   * @param prefetchPages
+   *          the number of pages loaded ahead. Defaults to 0, which queries each page when the previous one is used up
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPagingItemReader#setPrefetchPages(int)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisPagingItemReaderBuilder<T> prefetchPages(int prefetchPages) {
+    this.prefetchPages = prefetchPages;
+    return this;
+  }
+
+  /**
+   * Set the {@link TaskExecutor} that loads pages ahead.
+   *
+   * @param taskExecutor
+   *          the executor that runs the page queries
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPagingItemReader#setTaskExecutor(TaskExecutor)
+   *
+   * @since 3.0.4
+   */
+  public MyBatisPagingItemReaderBuilder<T> taskExecutor(TaskExecutor taskExecutor) {
+    this.taskExecutor = taskExecutor;
+    return this;
+  }
+
   /**
    * Returns a fully built {@link MyBatisPagingItemReader}.
    *
@@ -164,6 +220,9 @@ public class MyBatisPagingItemReaderBuilder<T> {
     Optional.ofNullable(this.pageSize).ifPresent(reader::setPageSize);
     Optional.ofNullable(this.saveState).ifPresent(reader::setSaveState);
     Optional.ofNullable(this.maxItemCount).ifPresent(reader::setMaxItemCount);
+    reader.setSortKeyConverter(this.sortKeyConverter);
+    Optional.ofNullable(this.prefetchPages).ifPresent(reader::setPrefetchPages);
+    reader.setTaskExecutor(this.taskExecutor);
     return reader;
   }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.batch.builder;
+
+import java.util.Map;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.batch.MyBatisPartitioner;
+
+/**
+ * A builder for the {@link MyBatisPartitioner}.
+ *
+ * @since 3.0.4
+ *
+ * @see MyBatisPartitioner
+ */
+public class MyBatisPartitionerBuilder {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private String queryId;
+  private Map<String, Object> parameterValues;
+
+  /**
+   * Set the {@link SqlSessionFactory} to be used by partitioner for database access.
+   *
+   * @param sqlSessionFactory
+   *          the {@link SqlSessionFactory} to be used by partitioner for database access
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPartitioner#setSqlSessionFactory(SqlSessionFactory)
+   */
+  public MyBatisPartitionerBuilder sqlSessionFactory(SqlSessionFactory sqlSessionFactory) {
+    this.sqlSessionFactory = sqlSessionFactory;
+    return this;
+  }
+
+  /**
+   * Set the query id identifying the boundary query in the SqlMap configuration file.
+   *
+   * @param queryId
+   *          the id for the query
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPartitioner#setQueryId(String)
+   */
+  public MyBatisPartitionerBuilder queryId(String queryId) {
+    this.queryId = queryId;
+    return this;
+  }
+
+  /**
+   * Set the parameter values to be used for the boundary query execution.
+   *
+   * @param parameterValues
+   *          the parameter values to be used for the boundary query execution
+   *
+   * @return this instance for method chaining
+   *
+   * @see MyBatisPartitioner#setParameterValues(Map)
+   */
+  public MyBatisPartitionerBuilder parameterValues(Map<String, Object> parameterValues) {
+    this.parameterValues = parameterValues;
+    return this;
+  }
+
+  /**
+   * Returns a fully built {@link MyBatisPartitioner}.
+   *
+   * @return the partitioner
+   */
+  public MyBatisPartitioner build() {
+    MyBatisPartitioner partitioner = new MyBatisPartitioner();
+    partitioner.setSqlSessionFactory(this.sqlSessionFactory);
+    partitioner.setQueryId(this.queryId);
+    partitioner.setParameterValues(this.parameterValues);
+    return partitioner;
+  }
+
+}
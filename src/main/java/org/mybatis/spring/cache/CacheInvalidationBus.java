@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+/**
+ * Transport of the namespace invalidations between the {@link SpringCacheProvider}s of several nodes. A statement
+ * that flushes the cache of a namespace on one node then clears the entries of that namespace on every node, which is
+ * needed when each node keeps its cache regions locally.
+ * <p>
+ * An implementation delivers an invalidation to every subscribed listener but its origin, and to the listeners of the
+ * other nodes, e.g. over a message broker. {@link InMemoryCacheInvalidationBus} delivers them within one JVM.
+ *
+ * @since 3.0.4
+ */
+public interface CacheInvalidationBus {
+
+  /**
+   * Publishes the invalidation of a namespace.
+   *
+   * @param namespace
+   *          the cleared namespace
+   * @param origin
+   *          the listener that cleared it, which does not receive the invalidation
+   */
+  void publish(String namespace, CacheInvalidationListener origin);
+
+  /**
+   * Subscribes a listener to the invalidations published by the other listeners.
+   *
+   * @param listener
+   *          the listener
+   */
+  void subscribe(CacheInvalidationListener listener);
+
+  /**
+   * Unsubscribes a listener.
+   *
+   * @param listener
+   *          the listener
+   */
+  void unsubscribe(CacheInvalidationListener listener);
+
+}
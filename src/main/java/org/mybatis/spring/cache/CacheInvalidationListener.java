@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+/**
+ * Listener of the namespace invalidations delivered by a {@link CacheInvalidationBus}.
+ *
+ * @since 3.0.4
+ */
+@FunctionalInterface
+public interface CacheInvalidationListener {
+
+  /**
+   * Called when the cache of a namespace has been cleared by another listener.
+   *
+   * @param namespace
+   *          the cleared namespace
+   * @param origin
+   *          the listener that published the invalidation, or {@code null} if it was received from another JVM
+   */
+  void onInvalidation(String namespace, CacheInvalidationListener origin);
+
+}
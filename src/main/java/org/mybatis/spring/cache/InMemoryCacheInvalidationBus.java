@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * {@link CacheInvalidationBus} delivering the invalidations synchronously to the listeners of the same JVM, e.g. to
+ * several {@code SqlSessionFactory}s with their own cache regions, or to the nodes simulated by a test.
+ *
+ * @since 3.0.4
+ */
+public class InMemoryCacheInvalidationBus implements CacheInvalidationBus {
+
+  private final CopyOnWriteArrayList<CacheInvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void publish(String namespace, CacheInvalidationListener origin) {
+    for (CacheInvalidationListener listener : this.listeners) {
+      if (listener != origin) {
+        listener.onInvalidation(namespace, origin);
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void subscribe(CacheInvalidationListener listener) {
+    this.listeners.addIfAbsent(listener);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void unsubscribe(CacheInvalidationListener listener) {
+    this.listeners.remove(listener);
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * MyBatis {@code Cache} storing the entries of a namespace in a Spring {@code Cache} region, provided by the
+ * {@link SpringCacheProvider} the cache is bound to. It is declared by a namespace with
+ * {@code <cache type="org.mybatis.spring.cache.SpringCache"/>} or
+ * {@code @CacheNamespace(implementation = SpringCache.class)}, and MyBatis still handles it as a transactional second
+ * level cache.
+ * <p>
+ * Besides the eviction configured on the region, entries can expire after the {@code timeToLive} in milliseconds, and
+ * a node can keep at most {@code size} entries, evicting the least recently used ones. Both can be set with the
+ * {@code <property>} elements of the {@code <cache>} element and default to the ones of the provider.
+ * <p>
+ * Clearing the cache, as a statement with {@code flushCache} does, is published to the other nodes through the
+ * {@link CacheInvalidationBus} of the provider.
+ *
+ * @since 3.0.4
+ */
+public class SpringCache implements Cache {
+
+  private final String id;
+
+  private volatile SpringCacheProvider provider;
+
+  private volatile org.springframework.cache.Cache region;
+
+  private Long timeToLive;
+
+  private Integer size;
+
+  // 按访问顺序记录本节点写入的key，用来淘汰最近最少使用的数据
+  private final Map<Object, Object> keys = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * Creates the cache of a namespace, which uses the provider it is bound to once its {@code Configuration} is built.
+   * This is the constructor called by MyBatis.
+   *
+   * @param id
+   *          the namespace
+   */
+  public SpringCache(String id) {
+    this(id, null);
+  }
+
+  /**
+   * Creates the cache of a namespace with the given provider.
+   *
+   * @param id
+   *          the namespace
+   * @param provider
+   *          the provider of the region, or {@code null} to use the provider the cache is bound to
+   */
+  public SpringCache(String id, SpringCacheProvider provider) {
+    if (id == null) {
+      throw new IllegalArgumentException("Cache instances require an ID");
+    }
+    this.id = id;
+    this.provider = provider;
+  }
+
+  /**
+   * Sets the time after which an entry expires.
+   *
+   * @param timeToLive
+   *          the time to live in milliseconds, {@code 0} for none
+   */
+  public void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Sets the number of entries this node keeps.
+   *
+   * @param size
+   *          the maximum number of entries, {@code 0} for no limit
+   */
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String getId() {
+    return this.id;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      // MyBatis放null只是为了释放BlockingCache的锁，Spring的Cache不一定允许null
+      getRegion().evict(key);
+      return;
+    }
+    long ttl = getTimeToLive();
+    getRegion().put(key, ttl > 0 ? new ExpiringValue(value, System.currentTimeMillis() + ttl) : value);
+    Object eldestKey = trackKey(key);
+    if (eldestKey != null) {
+      getRegion().evict(eldestKey);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object getObject(Object key) {
+    org.springframework.cache.Cache.ValueWrapper wrapper = getRegion().get(key);
+    if (wrapper == null) {
+      return null;
+    }
+    Object value = wrapper.get();
+    if (value instanceof ExpiringValue) {
+      ExpiringValue expiringValue = (ExpiringValue) value;
+      if (expiringValue.expiresAt <= System.currentTimeMillis()) {
+        getRegion().evict(key);
+        return null;
+      }
+      value = expiringValue.value;
+    }
+    if (getMaxSize() > 0) {
+      synchronized (this.keys) {
+        this.keys.get(key);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object removeObject(Object key) {
+    getRegion().evict(key);
+    synchronized (this.keys) {
+      this.keys.remove(key);
+    }
+    return null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void clear() {
+    clearLocal();
+    getProvider().publishInvalidation(this.id);
+  }
+
+  /**
+   * Clears the region and the keys tracked by this node, without telling the other nodes.
+   */
+  void clearLocal() {
+    getRegion().clear();
+    synchronized (this.keys) {
+      this.keys.clear();
+    }
+  }
+
+  /**
+   * Binds this cache to a provider, replacing the region of the previous one.
+   */
+  void bind(SpringCacheProvider provider) {
+    this.provider = provider;
+    this.region = null;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Returns the number of entries of the region if it is backed by a {@code Map}, otherwise the number of entries put
+   * by this node when a {@code size} is set, otherwise {@code 0}.
+   */
+  @Override
+  public int getSize() {
+    Object nativeCache = getRegion().getNativeCache();
+    if (nativeCache instanceof Map) {
+      return ((Map<?, ?>) nativeCache).size();
+    }
+    synchronized (this.keys) {
+      return this.keys.size();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+    return this.id.equals(((Cache) o).getId());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return this.id.hashCode();
+  }
+
+  private Object trackKey(Object key) {
+    int maxSize = getMaxSize();
+    if (maxSize <= 0) {
+      return null;
+    }
+    synchronized (this.keys) {
+      this.keys.put(key, key);
+      if (this.keys.size() <= maxSize) {
+        return null;
+      }
+      Iterator<Object> iterator = this.keys.keySet().iterator();
+      Object eldestKey = iterator.next();
+      iterator.remove();
+      return eldestKey;
+    }
+  }
+
+  private long getTimeToLive() {
+    if (this.timeToLive != null) {
+      return this.timeToLive;
+    }
+    Duration providerTimeToLive = getProvider().getTimeToLive();
+    return providerTimeToLive == null ? 0L : providerTimeToLive.toMillis();
+  }
+
+  private int getMaxSize() {
+    return this.size != null ? this.size : getProvider().getSize();
+  }
+
+  private SpringCacheProvider getProvider() {
+    SpringCacheProvider resolved = this.provider;
+    if (resolved == null) {
+      throw new CacheException("No SpringCacheProvider is bound to the cache namespace '" + this.id + "'");
+    }
+    return resolved;
+  }
+
+  private org.springframework.cache.Cache getRegion() {
+    org.springframework.cache.Cache resolved = this.region;
+    if (resolved == null) {
+      resolved = getProvider().getRegion(this.id);
+      this.region = resolved;
+    }
+    return resolved;
+  }
+
+  /**
+   * A cached value with the time it expires at, in milliseconds since the epoch.
+   */
+  private static final class ExpiringValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Object value;
+
+    private final long expiresAt;
+
+    ExpiringValue(Object value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+  }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+import static org.springframework.util.Assert.isTrue;
+import static org.springframework.util.Assert.notNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.mybatis.logging.Logger;
+import org.mybatis.logging.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Provides the Spring {@code Cache} regions of the {@link SpringCache}s: the entries of each MyBatis namespace are
+ * stored in the region named after the namespace, prefixed by the {@code regionPrefix}, of a Spring
+ * {@code CacheManager}, e.g. a {@code CaffeineCacheManager} for node local regions or a remote cache.
+ * <p>
+ * The {@code SpringCache} declared by a namespace is bound to its provider by the {@code SqlSessionFactoryBean} or the
+ * {@code MapperFactoryBean} that parses the namespace, so each {@code Configuration} uses its own provider:
+ *
+ * <pre class="code">
+ * &lt;cache type="org.mybatis.spring.cache.SpringCache"&gt;
+ *   &lt;property name="timeToLive" value="60000"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * or {@code @CacheNamespace(implementation = SpringCache.class)} on a mapper interface.
+ * <p>
+ * With a {@link CacheInvalidationBus}, clearing a namespace, as a statement with {@code flushCache} does, clears it on
+ * the other nodes too.
+ *
+ * @since 3.0.4
+ *
+ * @see org.mybatis.spring.SqlSessionFactoryBean#setCacheProvider(SpringCacheProvider)
+ * @see org.mybatis.spring.mapper.MapperFactoryBean#setCacheProvider(SpringCacheProvider)
+ */
+public class SpringCacheProvider implements CacheInvalidationListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpringCacheProvider.class);
+
+  private final CacheManager cacheManager;
+
+  // 同一个namespace在不同的Configuration中有各自的SpringCache，所以按实例而不是按id记录
+  private final Set<SpringCache> caches = Collections
+      .synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+  private String regionPrefix = "";
+
+  private Duration timeToLive;
+
+  private int size;
+
+  private CacheInvalidationBus invalidationBus;
+
+  /**
+   * Creates a provider of the regions of a Spring {@code CacheManager}.
+   *
+   * @param cacheManager
+   *          the cache manager holding the regions
+   */
+  public SpringCacheProvider(CacheManager cacheManager) {
+    notNull(cacheManager, "Property 'cacheManager' is required");
+    this.cacheManager = cacheManager;
+  }
+
+  /**
+   * Sets the prefix added to a namespace to get the name of its region. Default is no prefix.
+   *
+   * @param regionPrefix
+   *          the prefix, e.g. {@code "mybatis:"}
+   */
+  public void setRegionPrefix(String regionPrefix) {
+    this.regionPrefix = regionPrefix == null ? "" : regionPrefix;
+  }
+
+  /**
+   * Sets the default time after which an entry expires, for the caches that do not set their own
+   * {@code timeToLive}. Default is no expiration, besides the one configured on the regions themselves.
+   *
+   * @param timeToLive
+   *          the time to live, or {@code null} for none
+   */
+  public void setTimeToLive(Duration timeToLive) {
+    isTrue(timeToLive == null || !timeToLive.isNegative(), "Property 'timeToLive' must not be negative");
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Sets the default number of entries a node keeps per namespace, evicting the least recently used ones, for the
+   * caches that do not set their own {@code size}. Default is {@code 0}, no limit besides the one configured on the
+   * regions themselves.
+   *
+   * @param size
+   *          the maximum number of entries
+   */
+  public void setSize(int size) {
+    isTrue(size >= 0, "Property 'size' must not be negative");
+    this.size = size;
+  }
+
+  /**
+   * Sets the bus used to propagate the namespace invalidations to the other nodes.
+   *
+   * @param invalidationBus
+   *          the bus, or {@code null} to only clear the local regions
+   */
+  public void setInvalidationBus(CacheInvalidationBus invalidationBus) {
+    if (this.invalidationBus != null) {
+      this.invalidationBus.unsubscribe(this);
+    }
+    this.invalidationBus = invalidationBus;
+    if (invalidationBus != null) {
+      invalidationBus.subscribe(this);
+    }
+  }
+
+  /**
+   * Binds the cache of a namespace to this provider, so that it uses the regions of this provider. Does nothing if the
+   * cache is not a {@link SpringCache}, or a MyBatis decorator of one, e.g. the cache of a {@code Configuration}.
+   *
+   * @param cache
+   *          the cache of the namespace
+   */
+  public void bind(org.apache.ibatis.cache.Cache cache) {
+    notNull(cache, "Parameter 'cache' must be not null");
+    SpringCache springCache = unwrap(cache);
+    if (springCache != null) {
+      springCache.bind(this);
+      this.caches.add(springCache);
+    }
+  }
+
+  /**
+   * Unbinds the cache of a namespace from this provider, if it is bound to it.
+   *
+   * @param cache
+   *          the cache of the namespace
+   */
+  public void unbind(org.apache.ibatis.cache.Cache cache) {
+    SpringCache springCache = unwrap(cache);
+    if (springCache != null) {
+      this.caches.remove(springCache);
+    }
+  }
+
+  /**
+   * Returns the region of a namespace.
+   *
+   * @param namespace
+   *          the namespace
+   *
+   * @return the Spring {@code Cache} holding the entries of the namespace
+   */
+  public Cache getRegion(String namespace) {
+    String regionName = this.regionPrefix + namespace;
+    Cache region = this.cacheManager.getCache(regionName);
+    if (region == null) {
+      throw new CacheException("The CacheManager has no cache named '" + regionName + "' for the namespace '"
+          + namespace + "'");
+    }
+    return region;
+  }
+
+  Duration getTimeToLive() {
+    return this.timeToLive;
+  }
+
+  int getSize() {
+    return this.size;
+  }
+
+  /**
+   * Tells the other nodes that a namespace has been cleared on this one.
+   *
+   * @param namespace
+   *          the cleared namespace
+   */
+  void publishInvalidation(String namespace) {
+    if (this.invalidationBus != null) {
+      this.invalidationBus.publish(namespace, this);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Clears the caches of the namespace bound to this provider, without publishing the invalidation again.
+   */
+  @Override
+  public void onInvalidation(String namespace, CacheInvalidationListener origin) {
+    List<SpringCache> invalidated = new ArrayList<>();
+    synchronized (this.caches) {
+      this.caches.stream().filter(cache -> cache.getId().equals(namespace)).forEach(invalidated::add);
+    }
+    if (!invalidated.isEmpty()) {
+      LOGGER.debug(() -> "Clearing the cache region of the invalidated namespace '" + namespace + "'");
+      invalidated.forEach(SpringCache::clearLocal);
+    }
+  }
+
+  /**
+   * Returns the {@code SpringCache} wrapped by the MyBatis decorators of a cache, or {@code null} if there is none.
+   */
+  private static SpringCache unwrap(org.apache.ibatis.cache.Cache cache) {
+    Object current = cache;
+    while (!(current instanceof SpringCache)) {
+      // MyBatis的缓存装饰器都把被装饰的缓存保存在delegate字段中
+      if (current == null) {
+        return null;
+      }
+      MetaObject metaCache = SystemMetaObject.forObject(current);
+      if (!metaCache.hasGetter("delegate")) {
+        return null;
+      }
+      current = metaCache.getValue("delegate");
+    }
+    return (SpringCache) current;
+  }
+
+}
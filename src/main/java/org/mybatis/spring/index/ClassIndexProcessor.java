@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.index;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that writes the class index read by
+ * {@link org.mybatis.spring.SqlSessionFactoryBean#setClassIndexLocation(String)} to {@value #INDEX_PATH}.
+ * <p>
+ * It lists every class compiled with it, annotated or not, so that {@code typeAliasesPackage} and
+ * {@code typeHandlersPackage} can be resolved without scanning the classpath. The {@value #PACKAGES_OPTION} option
+ * limits the index to a comma separated list of packages and their sub packages, e.g.
+ * {@code -Amybatis.classIndex.packages=com.example.domain,com.example.type}. The entries of an index left by a
+ * previous build are kept, so that an incremental build does not drop the classes it did not recompile, as long as
+ * the compiler can still resolve them. The classes that were deleted or renamed since are dropped.
+ * <p>
+ * The processor is not registered as a service, so it only runs when it is declared, e.g. with Maven:
+ *
+ * <pre class="code">
+ * {@code
+ * <annotationProcessorPaths>
+ *   <path>
+ *     <groupId>org.mybatis</groupId>
+ *     <artifactId>mybatis-spring</artifactId>
+ *     <version>${mybatis-spring.version}</version>
+ *   </path>
+ * </annotationProcessorPaths>
+ * <annotationProcessors>
+ *   <annotationProcessor>org.mybatis.spring.index.ClassIndexProcessor</annotationProcessor>
+ * </annotationProcessors>
+ * }
+ * </pre>
+ *
+ * @since 3.0.4
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ClassIndexProcessor.PACKAGES_OPTION)
+public class ClassIndexProcessor extends AbstractProcessor {
+
+  /**
+   * The path of the class index in the class output, and in the jar.
+   */
+  public static final String INDEX_PATH = "META-INF/mybatis-spring.classes";
+
+  /**
+   * The option that limits the indexed classes to some packages.
+   */
+  public static final String PACKAGES_OPTION = "mybatis.classIndex.packages";
+
+  private final Set<String> classNames = new TreeSet<>();
+
+  private final List<String> packages = new ArrayList<>();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    String option = processingEnv.getOptions().get(PACKAGES_OPTION);
+    if (option != null) {
+      for (String packageName : option.split(",")) {
+        if (!packageName.trim().isEmpty()) {
+          this.packages.add(packageName.trim());
+        }
+      }
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      addType(type);
+    }
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    }
+    // 不声明处理了任何注解，其他处理器照常执行
+    return false;
+  }
+
+  private void addType(TypeElement type) {
+    String className = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+    if (isIndexed(className)) {
+      this.classNames.add(className);
+    }
+    for (Element enclosed : type.getEnclosedElements()) {
+      if (enclosed instanceof TypeElement) {
+        addType((TypeElement) enclosed);
+      }
+    }
+  }
+
+  private boolean isIndexed(String className) {
+    if (this.packages.isEmpty()) {
+      return true;
+    }
+    for (String packageName : this.packages) {
+      if (className.startsWith(packageName + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void writeIndex() {
+    if (this.classNames.isEmpty()) {
+      return;
+    }
+    Set<String> index = new TreeSet<>(this.classNames);
+    readPreviousIndex(index);
+    try {
+      FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+      try (Writer writer = file.openWriter()) {
+        writer.write("# Generated by " + ClassIndexProcessor.class.getName() + "\n");
+        for (String className : index) {
+          writer.write(className);
+          writer.write("\n");
+        }
+      }
+    } catch (IOException e) {
+      this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "Cannot write the class index " + INDEX_PATH + ": " + e);
+    }
+  }
+
+  private void readPreviousIndex(Set<String> index) {
+    try {
+      FileObject file = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+        reader.lines().map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#"))
+            .filter(this::isIndexed).filter(this::isResolvable).forEach(index::add);
+      }
+    } catch (IOException e) {
+      // 第一次构建时还没有索引文件
+    }
+  }
+
+  private boolean isResolvable(String className) {
+    // 增量编译时已经删除或者重命名的类不能留在索引里，否则扫描时会找不到这个类
+    return this.processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null;
+  }
+
+}
@@ -82,6 +82,8 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
 
   private String sqlSessionFactoryBeanName;
 
+  private String cacheProviderBeanName;
+
   private Class<? extends Annotation> annotationClass;
 
   private Class<?> markerInterface;
@@ -170,6 +172,18 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
     this.sqlSessionFactoryBeanName = sqlSessionFactoryBeanName;
   }
 
+  /**
+   * Set the bean name of the {@code SpringCacheProvider} set on the scanned mappers.
+   *
+   * @param cacheProviderBeanName
+   *          the bean name
+   *
+   * @since 3.0.4
+   */
+  public void setCacheProviderBeanName(String cacheProviderBeanName) {
+    this.cacheProviderBeanName = cacheProviderBeanName;
+  }
+
   /**
    * @deprecated Since 2.0.1, Please use the {@link #setMapperFactoryBeanClass(Class)}.
    */
@@ -350,6 +364,10 @@ public class ClassPathMapperScanner extends ClassPathBeanDefinitionScanner {
         explicitFactoryUsed = true;
       }
 
+      if (StringUtils.hasText(this.cacheProviderBeanName)) {
+        definition.getPropertyValues().add("cacheProvider", new RuntimeBeanReference(this.cacheProviderBeanName));
+      }
+
       if (!explicitFactoryUsed) {
         LOGGER.debug(() -> "Enabling autowire by type for MapperFactoryBean with name '" + holder.getBeanName() + "'.");
         definition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_BY_TYPE);
@@ -20,6 +20,7 @@ import static org.springframework.util.Assert.notNull;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.session.Configuration;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.cache.SpringCacheProvider;
 import org.mybatis.spring.support.SqlSessionDaoSupport;
 import org.springframework.beans.factory.FactoryBean;
 
@@ -67,6 +68,8 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
 
   private boolean addToConfig = true;
 
+  private SpringCacheProvider cacheProvider;
+
   public MapperFactoryBean() {
     // intentionally empty
   }
@@ -102,6 +105,11 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
         ErrorContext.instance().reset();
       }
     }
+
+    // 接口的namespace就是接口的全类名
+    if (this.cacheProvider != null && configuration.hasCache(this.mapperInterface.getName())) {
+      this.cacheProvider.bind(configuration.getCache(this.mapperInterface.getName()));
+    }
   }
 
   /**
@@ -115,12 +123,11 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
    * 3. 返回Mapper接口的代理对象
    * 4. proxy对象调用方法的时候会走到MapperProxy的invoke方法
    * 5. invoke方法会调用SqlSessionTemplate的selectList方法
-   * 6. selectList方法会调用SqlSessionTemplate里的sqlSessionProxy代码对象的selectList方法
-   * 7. 会进入到SqlSessionInterceptor的invoke方法
-   * 8. 从ThreadLocal里获取defaultSqlSession对象(线程安全的)
-   * 9. 没有获取到defaultSqlSession对象的时候会创建一个defaultSqlSession对象，放入到ThreadLocal里
-   * 10. 反射调用defaultSqlSession对象的selectList方法
-   * 11. 之后就是mybatis的流程了(defaultSqlSession调用流程)
+   * 6. selectList方法会调用SqlSessionTemplate的execute方法
+   * 7. 从ThreadLocal里获取defaultSqlSession对象(线程安全的)
+   * 8. 没有获取到defaultSqlSession对象的时候会创建一个defaultSqlSession对象，放入到ThreadLocal里
+   * 9. 直接调用defaultSqlSession对象的selectList方法(不再通过反射)
+   * 10. 之后就是mybatis的流程了(defaultSqlSession调用流程)
    */
   @Override
   public T getObject() throws Exception {
@@ -189,4 +196,30 @@ public class MapperFactoryBean<T> extends SqlSessionDaoSupport implements Factor
   public boolean isAddToConfig() {
     return addToConfig;
   }
+
+  /**
+   * Sets the provider of the Spring cache regions, which the namespace of the mapper is bound to if it declares a
+   * cache, e.g. with {@code @CacheNamespace(implementation = SpringCache.class)}.
+   *
+   * @param cacheProvider
+   *          a SpringCacheProvider
+   *
+   * @since 3.0.4
+   *
+   * @see org.mybatis.spring.cache.SpringCache
+   */
+  public void setCacheProvider(SpringCacheProvider cacheProvider) {
+    this.cacheProvider = cacheProvider;
+  }
+
+  /**
+   * Return the provider of the Spring cache regions.
+   *
+   * @return the provider, or {@code null} if none is set
+   *
+   * @since 3.0.4
+   */
+  public SpringCacheProvider getCacheProvider() {
+    return cacheProvider;
+  }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.mapper;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationCode;
+import org.springframework.beans.factory.aot.BeanRegistrationCodeFragments;
+import org.springframework.beans.factory.aot.BeanRegistrationCodeFragmentsDecorator;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.ResolvableType;
+import org.springframework.javapoet.CodeBlock;
+
+/**
+ * AOT contribution for a {@code MapperFactoryBean} registered by {@link ClassPathMapperScanner}.
+ * <p>
+ * The generated registration keeps the mapper interface as the generic type and the {@code factoryBeanObjectType} of
+ * the bean, and keeps autowiring by type, so that the bean factory can match it without creating the
+ * {@code MapperFactoryBean}. It also registers the JDK proxy and the reflection that MyBatis needs to create and call
+ * the mapper in a native image.
+ */
+final class MapperFactoryBeanAotContribution implements BeanRegistrationAotContribution {
+
+  private final Class<?> mapperInterface;
+
+  private final int autowireMode;
+
+  private MapperFactoryBeanAotContribution(Class<?> mapperInterface, int autowireMode) {
+    this.mapperInterface = mapperInterface;
+    this.autowireMode = autowireMode;
+  }
+
+  /**
+   * Creates a contribution if the bean is a {@code MapperFactoryBean} with a known mapper interface.
+   *
+   * @param registeredBean
+   *          the registered bean
+   *
+   * @return the contribution, or {@code null} for other beans
+   */
+  static MapperFactoryBeanAotContribution of(RegisteredBean registeredBean) {
+    if (!MapperFactoryBean.class.isAssignableFrom(registeredBean.getBeanClass())) {
+      return null;
+    }
+    RootBeanDefinition beanDefinition = registeredBean.getMergedBeanDefinition();
+    Object mapperInterface = beanDefinition.getAttribute(ClassPathMapperScanner.FACTORY_BEAN_OBJECT_TYPE);
+    if (!(mapperInterface instanceof Class)) {
+      return null;
+    }
+    return new MapperFactoryBeanAotContribution((Class<?>) mapperInterface, beanDefinition.getAutowireMode());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public BeanRegistrationCodeFragments customizeBeanRegistrationCodeFragments(GenerationContext generationContext,
+      BeanRegistrationCodeFragments codeFragments) {
+    return new BeanRegistrationCodeFragmentsDecorator(codeFragments) {
+
+      @Override
+      public CodeBlock generateNewBeanDefinitionCode(GenerationContext generationContext, ResolvableType beanType,
+          BeanRegistrationCode beanRegistrationCode) {
+        Class<?> beanClass = beanType.toClass();
+        if (beanClass.getTypeParameters().length == 1) {
+          beanType = ResolvableType.forClassWithGenerics(beanClass, mapperInterface);
+        }
+        return super.generateNewBeanDefinitionCode(generationContext, beanType, beanRegistrationCode);
+      }
+
+      @Override
+      public CodeBlock generateSetBeanDefinitionPropertiesCode(GenerationContext generationContext,
+          BeanRegistrationCode beanRegistrationCode, RootBeanDefinition beanDefinition,
+          Predicate<String> attributeFilter) {
+        Predicate<String> mapperAttributeFilter = attributeFilter
+            .or(ClassPathMapperScanner.FACTORY_BEAN_OBJECT_TYPE::equals);
+        CodeBlock.Builder code = CodeBlock.builder().add(super.generateSetBeanDefinitionPropertiesCode(
+            generationContext, beanRegistrationCode, beanDefinition, mapperAttributeFilter));
+        // 扫描时mapper接口是以通用构造参数(类名字符串)传入的，这里改为按下标传入Class，运行时不依赖生成代码对通用参数的支持
+        if (beanDefinition.getConstructorArgumentValues().getIndexedArgumentValues().isEmpty()
+            && !beanDefinition.getConstructorArgumentValues().getGenericArgumentValues().isEmpty()) {
+          code.addStatement("$L.getConstructorArgumentValues().addIndexedArgumentValue(0, $T.class)",
+              BeanRegistrationCodeFragments.BEAN_DEFINITION_VARIABLE, mapperInterface);
+        }
+        if (autowireMode != AbstractBeanDefinition.AUTOWIRE_NO) {
+          code.addStatement("$L.setAutowireMode($L)", BeanRegistrationCodeFragments.BEAN_DEFINITION_VARIABLE,
+              autowireMode);
+        }
+        return code.build();
+      }
+
+    };
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void applyTo(GenerationContext generationContext, BeanRegistrationCode beanRegistrationCode) {
+    RuntimeHints hints = generationContext.getRuntimeHints();
+    hints.proxies().registerJdkProxy(mapperInterface);
+    hints.reflection().registerType(mapperInterface, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+    // 方法的参数和返回值类型，MyBatis绑定参数和映射结果时需要通过反射访问
+    Set<Class<?>> bindingTypes = new LinkedHashSet<>();
+    for (Method method : mapperInterface.getMethods()) {
+      if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+        continue;
+      }
+      collectBindingTypes(ResolvableType.forMethodReturnType(method, mapperInterface), bindingTypes);
+      for (int i = 0; i < method.getParameterCount(); i++) {
+        collectBindingTypes(ResolvableType.forMethodParameter(method, i, mapperInterface), bindingTypes);
+      }
+    }
+    new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+        bindingTypes.toArray(new Class<?>[0]));
+  }
+
+  private static void collectBindingTypes(ResolvableType type, Set<Class<?>> bindingTypes) {
+    if (type.isArray()) {
+      collectBindingTypes(type.getComponentType(), bindingTypes);
+      return;
+    }
+    Class<?> clazz = type.resolve();
+    if (clazz == null || clazz.isPrimitive() || !bindingTypes.add(clazz)) {
+      return;
+    }
+    for (ResolvableType generic : type.getGenerics()) {
+      collectBindingTypes(generic, bindingTypes);
+    }
+  }
+
+}
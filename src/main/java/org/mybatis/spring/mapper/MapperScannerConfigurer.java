@@ -31,6 +31,8 @@ import org.springframework.beans.PropertyValue;
 import org.springframework.beans.PropertyValues;
 import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.PropertyResourceConfigurer;
@@ -39,6 +41,7 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.beans.factory.support.BeanNameGenerator;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RegisteredBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -81,6 +84,11 @@ import org.springframework.util.StringUtils;
  * note that this configurer does support property placeholders of its <em>own</em> properties. The
  * <code>basePackage</code> and bean name properties all support <code>${property}</code> style substitution.
  * <p>
+ * When the application context is processed ahead of time, the scan runs at build time only: the mapper bean
+ * definitions are written to the generated code together with their runtime hints, and this configurer is left out of
+ * it. Mapper beans that should work with AOT must reference the {@code SqlSessionFactory} or {@code SqlSessionTemplate}
+ * by bean name or by autowiring rather than by instance.
+ * <p>
  * Configuration sample:
  *
  * <pre class="code">
@@ -101,7 +109,8 @@ import org.springframework.util.StringUtils;
  * Mapper接口的扫描类
  */
 public class MapperScannerConfigurer
-    implements BeanDefinitionRegistryPostProcessor, InitializingBean, ApplicationContextAware, BeanNameAware {
+    implements BeanDefinitionRegistryPostProcessor, BeanRegistrationAotProcessor, InitializingBean,
+    ApplicationContextAware, BeanNameAware {
 
   private String basePackage;
 
@@ -117,6 +126,8 @@ public class MapperScannerConfigurer
 
   private String sqlSessionTemplateBeanName;
 
+  private String cacheProviderBeanName;
+
   private Class<? extends Annotation> annotationClass;
 
   private Class<?> markerInterface;
@@ -268,6 +279,21 @@ public class MapperScannerConfigurer
     this.sqlSessionTemplateBeanName = sqlSessionTemplateName;
   }
 
+  /**
+   * Specifies the {@code SpringCacheProvider} that the namespaces of the scanned mappers are bound to, if they declare
+   * a {@code SpringCache}.
+   * <p>
+   * Note bean names are used, not bean references, for the same reason as for the {@code SqlSessionTemplate}.
+   *
+   * @since 3.0.4
+   *
+   * @param cacheProviderBeanName
+   *          Bean name of the {@code SpringCacheProvider}
+   */
+  public void setCacheProviderBeanName(String cacheProviderBeanName) {
+    this.cacheProviderBeanName = cacheProviderBeanName;
+  }
+
   /**
    * Specifies which {@code SqlSessionFactory} to use in the case that there is more than one in the spring context.
    * Usually this is only needed when you have more than one datasource.
@@ -417,6 +443,7 @@ public class MapperScannerConfigurer
     scanner.setSqlSessionTemplate(this.sqlSessionTemplate);
     scanner.setSqlSessionFactoryBeanName(this.sqlSessionFactoryBeanName);
     scanner.setSqlSessionTemplateBeanName(this.sqlSessionTemplateBeanName);
+    scanner.setCacheProviderBeanName(this.cacheProviderBeanName);
     scanner.setResourceLoader(this.applicationContext);
     scanner.setBeanNameGenerator(this.nameGenerator);
     scanner.setMapperFactoryBeanClass(this.mapperFactoryBeanClass);
@@ -434,6 +461,32 @@ public class MapperScannerConfigurer
         StringUtils.tokenizeToStringArray(this.basePackage, ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS));
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Contributes the {@code MapperFactoryBean} registrations found by the scan at build time, with the runtime hints of
+   * their mapper interfaces.
+   *
+   * @since 3.0.4
+   */
+  @Override
+  public BeanRegistrationAotContribution processAheadOfTime(RegisteredBean registeredBean) {
+    return MapperFactoryBeanAotContribution.of(registeredBean);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The mappers are registered by the generated code of an AOT-processed context, so this configurer is excluded from
+   * it and does not scan again.
+   *
+   * @since 3.0.4
+   */
+  @Override
+  public boolean isBeanExcludedFromAotProcessing() {
+    return true;
+  }
+
   /*
    * BeanDefinitionRegistries are called early in application startup, before BeanFactoryPostProcessors. This means that
    * PropertyResourceConfigurers will not have been loaded and any property substitution of this class' properties will
@@ -463,6 +516,7 @@ public class MapperScannerConfigurer
       this.basePackage = getPropertyValue("basePackage", values);
       this.sqlSessionFactoryBeanName = getPropertyValue("sqlSessionFactoryBeanName", values);
       this.sqlSessionTemplateBeanName = getPropertyValue("sqlSessionTemplateBeanName", values);
+      this.cacheProviderBeanName = getPropertyValue("cacheProviderBeanName", values);
       this.lazyInitialization = getPropertyValue("lazyInitialization", values);
       this.defaultScope = getPropertyValue("defaultScope", values);
       this.rawExcludeFilters = getPropertyValueForTypeFilter("rawExcludeFilters", values);
@@ -472,6 +526,8 @@ public class MapperScannerConfigurer
         .map(getEnvironment()::resolvePlaceholders).orElse(null);
     this.sqlSessionTemplateBeanName = Optional.ofNullable(this.sqlSessionTemplateBeanName)
         .map(getEnvironment()::resolvePlaceholders).orElse(null);
+    this.cacheProviderBeanName = Optional.ofNullable(this.cacheProviderBeanName)
+        .map(getEnvironment()::resolvePlaceholders).orElse(null);
     this.lazyInitialization = Optional.ofNullable(this.lazyInitialization).map(getEnvironment()::resolvePlaceholders)
         .orElse(null);
     this.defaultScope = Optional.ofNullable(this.defaultScope).map(getEnvironment()::resolvePlaceholders).orElse(null);
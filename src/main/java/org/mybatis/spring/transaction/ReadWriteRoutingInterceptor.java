@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+
+/**
+ * Routes each statement executed with a {@link SpringManagedTransaction} to the primary or to the read
+ * {@code DataSource} according to its {@link SqlCommandType}.
+ * <p>
+ * A {@code SELECT} is a read unless it is declared with {@code affectData="true"} or its mapper interface or method is
+ * annotated with {@link ReadFromPrimary}. All the other statements are writes. {@code SqlSessionFactoryBean} registers
+ * this plugin when a read {@code DataSource} is set.
+ * <p>
+ * When a statement is routed to another connection than the previous one, e.g. the first write after reads from the
+ * replica, the statements prepared by the executor are flushed, so that a {@code ReuseExecutor} does not run a select
+ * again on the statement it prepared on the other connection.
+ *
+ * @see SpringManagedTransactionFactory#setReadDataSource(javax.sql.DataSource)
+ *
+ * @since 3.0.4
+ */
+@Intercepts({ @Signature(type = Executor.class, method = "update", args = { MappedStatement.class, Object.class }),
+    @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+        RowBounds.class, ResultHandler.class }),
+    @Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+        RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class }),
+    @Signature(type = Executor.class, method = "queryCursor", args = { MappedStatement.class, Object.class,
+        RowBounds.class }) })
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+  // 按语句id缓存是否标注了@ReadFromPrimary，避免每次执行都反射
+  private final Map<String, Boolean> primaryStatements = new ConcurrentHashMap<>();
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Object intercept(Invocation invocation) throws Throwable {
+    Executor executor = (Executor) invocation.getTarget();
+    Transaction transaction = executor.getTransaction();
+    if (transaction instanceof SpringManagedTransaction) {
+      MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+      if (((SpringManagedTransaction) transaction).routeNextStatement(isRead(mappedStatement))) {
+        // ReuseExecutor按sql缓存Statement，切换连接后不能再用另一个连接上的Statement
+        executor.flushStatements();
+      }
+    }
+    return invocation.proceed();
+  }
+
+  private boolean isRead(MappedStatement mappedStatement) {
+    return mappedStatement.getSqlCommandType() == SqlCommandType.SELECT && !mappedStatement.isDirtySelect()
+        && !this.primaryStatements.computeIfAbsent(mappedStatement.getId(),
+            ReadWriteRoutingInterceptor::isReadFromPrimary);
+  }
+
+  private static boolean isReadFromPrimary(String statementId) {
+    int index = statementId.lastIndexOf('.');
+    if (index <= 0) {
+      return false;
+    }
+    Class<?> mapperInterface;
+    try {
+      // 与MyBatis绑定namespace时一样，通过Resources使用其ClassLoaderWrapper加载
+      mapperInterface = Resources.classForName(statementId.substring(0, index));
+    } catch (ClassNotFoundException | LinkageError e) {
+      // namespace不是mapper接口，只在xml里定义的语句
+      return false;
+    }
+    if (AnnotatedElementUtils.hasAnnotation(mapperInterface, ReadFromPrimary.class)) {
+      return true;
+    }
+    String methodName = statementId.substring(index + 1);
+    for (Method method : mapperInterface.getMethods()) {
+      if (method.getName().equals(methodName) && AnnotatedElementUtils.hasAnnotation(method, ReadFromPrimary.class)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
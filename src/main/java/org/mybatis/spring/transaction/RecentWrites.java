@@ -0,0 +1,55 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import java.time.Duration;
+
+/**
+ * Remembers when the current thread last routed a write, so that its reads keep using the primary for a while even
+ * when they run in another {@code SpringManagedTransaction}, e.g. in the next call of a {@code SqlSessionTemplate}.
+ *
+ * @since 3.0.4
+ */
+final class RecentWrites {
+
+  private final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+  private final long windowNanos;
+
+  RecentWrites(Duration window) {
+    this.windowNanos = window.toNanos();
+  }
+
+  void recordWrite() {
+    if (this.windowNanos > 0) {
+      this.lastWrite.set(System.nanoTime());
+    }
+  }
+
+  boolean isRecent() {
+    Long lastWriteTime = this.lastWrite.get();
+    if (lastWriteTime == null) {
+      return false;
+    }
+    if (System.nanoTime() - lastWriteTime < this.windowNanos) {
+      return true;
+    }
+    // 窗口已过，不再占用线程变量
+    this.lastWrite.remove();
+    return false;
+  }
+
+}
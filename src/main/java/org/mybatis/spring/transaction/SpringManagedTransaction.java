@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -37,6 +37,13 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
  * transaction manager will do the job.
  * <p>
  * If it is not it will behave like {@code JdbcTransaction}.
+ * <p>
+ * When it has a read {@code DataSource}, the reads routed by {@link ReadWriteRoutingInterceptor} use a connection of
+ * the replica unless a read-write Spring transaction is active. Once a write has been routed, the following reads also
+ * use the primary connection until the transaction is closed, so that they see the written data. When it is created by
+ * a {@link SpringManagedTransactionFactory}, the reads of the same thread keep using the primary during the
+ * {@link SpringManagedTransactionFactory#setReadAfterWriteWindow(java.time.Duration) read after write window} that
+ * follows the write, even in the next transactions.
  *
  * @author Hunter Presnall
  * @author Eduardo Macarron
@@ -56,9 +63,70 @@ public class SpringManagedTransaction implements Transaction {
 
   private boolean autoCommit;
 
+  // 读库数据源，没有配置时所有语句都使用主库
+  private final DataSource readDataSource;
+
+  private Connection readConnection;
+
+  private boolean isReadConnectionTransactional;
+
+  private boolean readAutoCommit;
+
+  private boolean readRouted;
+
+  private boolean written;
+
+  // 同一线程最近写过主库时，后续事务的读也走主库
+  private final RecentWrites recentWrites;
+
   public SpringManagedTransaction(DataSource dataSource) {
+    this(dataSource, null);
+  }
+
+  /**
+   * Creates a transaction that can route the reads to a replica.
+   *
+   * @param dataSource
+   *          the primary {@code DataSource}
+   * @param readDataSource
+   *          the {@code DataSource} of the replica, or {@code null} to use the primary for all statements
+   *
+   * @since 3.0.4
+   */
+  public SpringManagedTransaction(DataSource dataSource, DataSource readDataSource) {
+    this(dataSource, readDataSource, null);
+  }
+
+  SpringManagedTransaction(DataSource dataSource, DataSource readDataSource, RecentWrites recentWrites) {
     notNull(dataSource, "No DataSource specified");
     this.dataSource = dataSource;
+    this.readDataSource = readDataSource;
+    this.recentWrites = recentWrites;
+  }
+
+  /**
+   * Tells whether the next statement only reads data, so that {@link #getConnection()} can return a connection of the
+   * read {@code DataSource}.
+   *
+   * @param read
+   *          {@code true} if the next statement is a read that may use the replica
+   *
+   * @return {@code true} if the next statement uses another connection than the previous one, so that the statements
+   *         an executor prepared on the previous connection must not be reused
+   *
+   * @since 3.0.4
+   */
+  public boolean routeNextStatement(boolean read) {
+    boolean previousReadRouted = isReadRouted();
+    this.readRouted = read;
+    if (!read) {
+      this.written = true;
+      if (this.recentWrites != null) {
+        this.recentWrites.recordWrite();
+      }
+    }
+    // 还没有打开读库连接时，之前的语句都在主库上执行
+    return this.readConnection != null && previousReadRouted != isReadRouted();
   }
 
   /**
@@ -66,6 +134,12 @@ public class SpringManagedTransaction implements Transaction {
    */
   @Override
   public Connection getConnection() throws SQLException {
+    if (isReadRouted()) {
+      if (this.readConnection == null) {
+        openReadConnection();
+      }
+      return this.readConnection;
+    }
     // 获取一个连接
     if (this.connection == null) {
       openConnection();
@@ -91,6 +165,26 @@ public class SpringManagedTransaction implements Transaction {
         + (this.isConnectionTransactional ? " " : " not ") + "be managed by Spring");
   }
 
+  private void openReadConnection() throws SQLException {
+    this.readConnection = DataSourceUtils.getConnection(this.readDataSource);
+    this.readAutoCommit = this.readConnection.getAutoCommit();
+    this.isReadConnectionTransactional = DataSourceUtils.isConnectionTransactional(this.readConnection,
+        this.readDataSource);
+
+    LOGGER.debug(() -> "JDBC Connection [" + this.readConnection + "] of the read DataSource will"
+        + (this.isReadConnectionTransactional ? " " : " not ") + "be managed by Spring");
+  }
+
+  private boolean isReadRouted() {
+    if (this.readDataSource == null || !this.readRouted || this.written
+        || this.recentWrites != null && this.recentWrites.isRecent()) {
+      return false;
+    }
+    // 读写事务里的读也走主库，副本可能还没有同步事务里写入的数据
+    return !TransactionSynchronizationManager.isActualTransactionActive()
+        || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -101,6 +195,10 @@ public class SpringManagedTransaction implements Transaction {
       LOGGER.debug(() -> "Committing JDBC Connection [" + this.connection + "]");
       this.connection.commit();
     }
+    if (this.readConnection != null && !this.isReadConnectionTransactional && !this.readAutoCommit) {
+      LOGGER.debug(() -> "Committing JDBC Connection [" + this.readConnection + "]");
+      this.readConnection.commit();
+    }
   }
 
   /**
@@ -113,6 +211,10 @@ public class SpringManagedTransaction implements Transaction {
       LOGGER.debug(() -> "Rolling back JDBC Connection [" + this.connection + "]");
       this.connection.rollback();
     }
+    if (this.readConnection != null && !this.isReadConnectionTransactional && !this.readAutoCommit) {
+      LOGGER.debug(() -> "Rolling back JDBC Connection [" + this.readConnection + "]");
+      this.readConnection.rollback();
+    }
   }
 
   /**
@@ -122,6 +224,14 @@ public class SpringManagedTransaction implements Transaction {
   public void close() throws SQLException {
     // 关闭事务，将连接放入连接池。看项目里使用什么样的数据库连接池
     DataSourceUtils.releaseConnection(this.connection, this.dataSource);
+    // a reused transaction (see SqlSessionPool) fetches a new connection on its next use
+    this.connection = null;
+    if (this.readConnection != null) {
+      DataSourceUtils.releaseConnection(this.readConnection, this.readDataSource);
+      this.readConnection = null;
+    }
+    this.readRouted = false;
+    this.written = false;
   }
 
   /**
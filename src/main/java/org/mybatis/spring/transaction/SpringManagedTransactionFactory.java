@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,7 +15,10 @@
  */
 package org.mybatis.spring.transaction;
 
+import static org.springframework.util.Assert.notNull;
+
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -32,13 +35,56 @@ import org.apache.ibatis.transaction.TransactionFactory;
  */
 public class SpringManagedTransactionFactory implements TransactionFactory {
 
+  private DataSource readDataSource;
+
+  private RecentWrites recentWrites = new RecentWrites(Duration.ofSeconds(1));
+
+  /**
+   * Gets the read DataSource.
+   *
+   * @return the {@code DataSource} of the replica, or {@code null} if not set
+   *
+   * @since 3.0.4
+   */
+  public DataSource getReadDataSource() {
+    return this.readDataSource;
+  }
+
+  /**
+   * Sets the {@code DataSource} of a replica. The reads routed by {@link ReadWriteRoutingInterceptor} outside a
+   * read-write transaction use it instead of the {@code DataSource} of the environment.
+   *
+   * @param readDataSource
+   *          the read DataSource
+   *
+   * @since 3.0.4
+   */
+  public void setReadDataSource(DataSource readDataSource) {
+    this.readDataSource = readDataSource;
+  }
+
+  /**
+   * Sets how long the reads of a thread keep using the primary after it wrote, when they run in another transaction
+   * than the write, e.g. in the next call of a {@code SqlSessionTemplate}. It should exceed the usual replication lag
+   * of the replica. The reads within the transaction of the write always use the primary.
+   *
+   * @param readAfterWriteWindow
+   *          the window after the last write. Default is one second, {@code Duration.ZERO} disables it.
+   *
+   * @since 3.0.4
+   */
+  public void setReadAfterWriteWindow(Duration readAfterWriteWindow) {
+    notNull(readAfterWriteWindow, "Property 'readAfterWriteWindow' is required");
+    this.recentWrites = new RecentWrites(readAfterWriteWindow);
+  }
+
   /**
    * {@inheritDoc}
    * 创建一个事务，设置数据源
    */
   @Override
   public Transaction newTransaction(DataSource dataSource, TransactionIsolationLevel level, boolean autoCommit) {
-    return new SpringManagedTransaction(dataSource);
+    return new SpringManagedTransaction(dataSource, this.readDataSource, this.recentWrites);
   }
 
   /**
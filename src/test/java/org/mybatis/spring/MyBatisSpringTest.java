@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,15 +25,23 @@ import com.mockrunner.mock.jdbc.MockPreparedStatement;
 
 import jakarta.transaction.UserTransaction;
 
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TransactionalCacheManager;
 import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.plugin.Plugin;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
 import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
 import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.transaction.TransactionStatus;
@@ -397,6 +405,36 @@ class MyBatisSpringTest extends AbstractMyBatisSpringTest {
     assertSingleConnection();
   }
 
+  @Test
+  void testSqlSessionContextWithTx() {
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+
+    SqlSessionContext context = SqlSessionUtils.getSqlSessionContext(sqlSessionFactory, ExecutorType.SIMPLE, null);
+    session = context.getSqlSession();
+    assertThat(context.isSqlSessionTransactional()).isTrue();
+    assertThat(SqlSessionUtils.isSqlSessionTransactional(session, sqlSessionFactory)).isTrue();
+    session.getMapper(TestMapper.class).findTest();
+    context.release();
+
+    txManager.commit(status);
+
+    assertCommit();
+    assertSingleConnection();
+  }
+
+  @Test
+  void testSqlSessionContextWithoutTx() {
+    SqlSessionContext context = SqlSessionUtils.getSqlSessionContext(sqlSessionFactory, ExecutorType.SIMPLE, null);
+    session = context.getSqlSession();
+    assertThat(context.isSqlSessionTransactional()).isFalse();
+    session.getMapper(TestMapper.class).findTest();
+    context.release();
+
+    assertNoCommit();
+    assertSingleConnection();
+    assertThat(executorInterceptor.isExecutorClosed()).isTrue();
+  }
+
   @Test
   void testSqlSessionCommitWithTx() {
     DefaultTransactionDefinition txDef = new DefaultTransactionDefinition();
@@ -422,6 +460,86 @@ class MyBatisSpringTest extends AbstractMyBatisSpringTest {
     assertSingleConnection();
   }
 
+  @Test
+  void testSecondLevelCacheUpdatedOnTxCommit() throws Exception {
+    SqlSessionFactory cachingSqlSessionFactory = createCachingSqlSessionFactory();
+    Cache cache = cachingSqlSessionFactory.getConfiguration().getCache("org.mybatis.spring.CachedTestMapper");
+
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+
+    session = SqlSessionUtils.getSqlSession(cachingSqlSessionFactory);
+    session.selectOne("org.mybatis.spring.CachedTestMapper.selectOne");
+    SqlSessionUtils.closeSqlSession(session, cachingSqlSessionFactory);
+
+    assertThat(cache.getSize()).as("should not update the cache before the tx is committed").isEqualTo(0);
+
+    txManager.commit(status);
+
+    assertCommit();
+    assertThat(cache.getSize()).as("should update the cache once the tx is committed").isEqualTo(1);
+  }
+
+  @Test
+  void testSecondLevelCacheNotUpdatedOnTxRollback() throws Exception {
+    SqlSessionFactory cachingSqlSessionFactory = createCachingSqlSessionFactory();
+    Cache cache = cachingSqlSessionFactory.getConfiguration().getCache("org.mybatis.spring.CachedTestMapper");
+
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+
+    session = SqlSessionUtils.getSqlSession(cachingSqlSessionFactory);
+    session.selectOne("org.mybatis.spring.CachedTestMapper.selectOne");
+    SqlSessionUtils.closeSqlSession(session, cachingSqlSessionFactory);
+
+    txManager.rollback(status);
+
+    assertThat(connection.getNumberRollbacks()).as("should call rollback on Connection").isEqualTo(1);
+    assertThat(executorInterceptor.isExecutorClosed()).as("should close the SqlSession").isTrue();
+    assertThat(cache.getSize()).as("should discard the cache entries of a rolled back tx").isEqualTo(0);
+  }
+
+  @Test
+  void testMyBatisFieldsUsedToHoldBackTheCacheExist() throws Exception {
+    // SqlSessionUtils reaches them by reflection, a MyBatis upgrade that renames them must fail here
+    assertThat(DefaultSqlSession.class.getDeclaredField("executor").getType()).isEqualTo(Executor.class);
+    assertThat(Plugin.class.getDeclaredField("target").getType()).isEqualTo(Object.class);
+    assertThat(CachingExecutor.class.getDeclaredField("tcm").getType()).isEqualTo(TransactionalCacheManager.class);
+
+    connection = null;
+  }
+
+  @Test
+  void testWithJtaTxManagerReleasesConnectionBeforeCompletion() throws Exception {
+    SqlSessionFactory cachingSqlSessionFactory = createCachingSqlSessionFactory();
+    Cache cache = cachingSqlSessionFactory.getConfiguration().getCache("org.mybatis.spring.CachedTestMapper");
+
+    UserTransaction userTransaction = Mockito.mock(UserTransaction.class);
+    JtaTransactionManager jtaManager = new JtaTransactionManager(userTransaction);
+    // a strict JTA setup needs the connection to be released before the JTA tx completes
+    boolean[] connectionClosedOnCommit = new boolean[1];
+    int[] cacheSizeOnCommit = new int[1];
+    Mockito.doAnswer(invocation -> {
+      connectionClosedOnCommit[0] = connection.isClosed();
+      cacheSizeOnCommit[0] = cache.getSize();
+      return null;
+    }).when(userTransaction).commit();
+
+    TransactionStatus status = jtaManager.getTransaction(new DefaultTransactionDefinition());
+
+    session = SqlSessionUtils.getSqlSession(cachingSqlSessionFactory);
+    session.selectOne("org.mybatis.spring.CachedTestMapper.selectOne");
+    SqlSessionUtils.closeSqlSession(session, cachingSqlSessionFactory);
+
+    jtaManager.commit(status);
+
+    assertThat(connectionClosedOnCommit[0]).as("should release the Connection before the JTA tx commits").isTrue();
+    assertThat(executorInterceptor.isExecutorClosed()).as("should close the SqlSession before completion").isTrue();
+    assertThat(cacheSizeOnCommit[0]).as("should not update the cache before the tx is committed").isEqualTo(0);
+    assertThat(cache.getSize()).as("should update the cache once the tx is committed").isEqualTo(1);
+    assertNoCommitJdbc();
+    assertCommitSession();
+    assertSingleConnection();
+  }
+
   @Test
   void testWithInterleavedTx() {
     // this session will use one Connection
@@ -601,4 +719,13 @@ class MyBatisSpringTest extends AbstractMyBatisSpringTest {
 
     connection.getPreparedStatementResultSetHandler().prepareThrowsSQLException("INSERT fail");
   }
+
+  private static SqlSessionFactory createCachingSqlSessionFactory() throws Exception {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setMapperLocations(new ClassPathResource("org/mybatis/spring/CachedTestMapper.xml"));
+    factoryBean.setDataSource(dataSource);
+    factoryBean.setPlugins(executorInterceptor);
+    return factoryBean.getObject();
+  }
+
 }
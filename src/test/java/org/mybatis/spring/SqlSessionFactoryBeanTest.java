@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.mockrunner.mock.jdbc.MockDataSource;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.sql.CallableStatement;
@@ -61,6 +62,7 @@ import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.junit.jupiter.api.Test;
 import org.mybatis.core.jdk.type.AtomicNumberTypeHandler;
+import org.mybatis.spring.alias.NestedTypes;
 import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
 import org.mybatis.spring.type.DummyTypeAlias;
 import org.mybatis.spring.type.DummyTypeHandler;
@@ -324,6 +326,35 @@ class SqlSessionFactoryBeanTest {
     assertThat(factory.getConfiguration().getSqlFragments().size()).isEqualTo(2);
   }
 
+  @Test
+  void testParallelMapperParsing() throws Exception {
+    setupFactoryBean();
+    factoryBean.setMapperParsingParallelism(4);
+    factoryBean.setMapperLocations(new ClassPathResource("org/mybatis/spring/TestMapper4.xml"),
+        new ClassPathResource("org/mybatis/spring/TestMapper.xml"),
+        new ClassPathResource("org/mybatis/spring/TestMapper2.xml"), null,
+        new ClassPathResource("org/mybatis/spring/TestMapper3.xml"));
+
+    Configuration configuration = factoryBean.getObject().getConfiguration();
+
+    assertThat(configuration.getMappedStatement("org.mybatis.spring.TestMapper.findTest")).isNotNull();
+    assertThat(configuration.getMappedStatement("org.mybatis.spring.TestMapper2.selectOne")).isNotNull();
+    assertThat(configuration.getMappedStatement("org.mybatis.spring.TestMapper3.selectOne")).isNotNull();
+    assertThat(configuration.getMappedStatement("org.mybatis.spring.TestMapper4.selectIncluded").getBoundSql(null)
+        .getSql()).contains("1");
+    assertThat(configuration.getIncompleteStatements()).isEmpty();
+  }
+
+  @Test
+  void testParallelMapperParsingFailure() {
+    setupFactoryBean();
+    factoryBean.setMapperParsingParallelism(2);
+    factoryBean.setMapperLocations(new ClassPathResource("org/mybatis/spring/TestMapper.xml"),
+        new ClassPathResource("org/mybatis/spring/NotFoundMapper.xml"));
+
+    assertThrows(IOException.class, factoryBean::getObject);
+  }
+
   @Test
   void testNullMapperLocations() throws Exception {
     setupFactoryBean();
@@ -386,6 +417,47 @@ class SqlSessionFactoryBeanTest {
     typeAliasRegistry.resolveAlias("scanenum");
   }
 
+  @Test
+  void testSearchATypeAliasPackageWithNestedClasses() throws Exception {
+    setupFactoryBean();
+    factoryBean.setTypeAliasesPackage("org.mybatis.spring.alias");
+
+    TypeAliasRegistry typeAliasRegistry = factoryBean.getObject().getConfiguration().getTypeAliasRegistry();
+    assertThat(typeAliasRegistry.resolveAlias("nestedTypes")).isEqualTo(NestedTypes.class);
+    // local classes are registered, member and anonymous classes are not
+    assertThat(typeAliasRegistry.resolveAlias("localType")).isEqualTo(NestedTypes.localType());
+    assertThat(typeAliasRegistry.getTypeAliases()).doesNotContainKey("membertype")
+        .doesNotContainValue(NestedTypes.anonymousType());
+  }
+
+  @Test
+  void testSearchATypeAliasPackageWithClassIndex() throws Exception {
+    setupFactoryBean();
+    factoryBean.setClassIndexLocation("classpath*:org/mybatis/spring/type/mybatis-spring.classes");
+    factoryBean.setTypeAliasesPackage("org.mybatis.*.type");
+
+    TypeAliasRegistry typeAliasRegistry = factoryBean.getObject().getConfiguration().getTypeAliasRegistry();
+    typeAliasRegistry.resolveAlias("testAlias");
+    typeAliasRegistry.resolveAlias("dummyTypeHandler");
+    typeAliasRegistry.resolveAlias("superType");
+
+    // not listed in the index
+    assertThrows(TypeException.class, () -> typeAliasRegistry.resolveAlias("testAlias2"));
+    // listed in the index, but outside of the package
+    assertThrows(TypeException.class, () -> typeAliasRegistry.resolveAlias("scanclass1"));
+  }
+
+  @Test
+  void testSearchATypeAliasPackageWithMissingClassIndex() throws Exception {
+    setupFactoryBean();
+    factoryBean.setClassIndexLocation("classpath*:org/mybatis/spring/type/missing.classes");
+    factoryBean.setTypeAliasesPackage("org.mybatis.spring.type");
+
+    TypeAliasRegistry typeAliasRegistry = factoryBean.getObject().getConfiguration().getTypeAliasRegistry();
+    typeAliasRegistry.resolveAlias("testAlias");
+    typeAliasRegistry.resolveAlias("testAlias2");
+  }
+
   @Test
   void testSearchATypeAliasPackageWithSuperType() throws Exception {
     setupFactoryBean();
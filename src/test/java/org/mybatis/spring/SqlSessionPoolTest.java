@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+class SqlSessionPoolTest extends AbstractMyBatisSpringTest {
+
+  private SqlSessionPool pool;
+
+  private SqlSessionTemplate sqlSessionTemplate;
+
+  @BeforeEach
+  void setupPool() {
+    pool = new SqlSessionPool(sqlSessionFactory, 2);
+    sqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory);
+    sqlSessionTemplate.setSqlSessionPool(pool);
+  }
+
+  @AfterEach
+  void destroyPool() {
+    pool.destroy();
+  }
+
+  private SqlSessionContext borrow(ExecutorType executorType) {
+    return SqlSessionUtils.getSqlSessionContext(sqlSessionFactory, executorType, null, pool);
+  }
+
+  @Test
+  void testNonTransactionalSessionIsReused() {
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+
+    assertThat(pool.getMissCount()).isEqualTo(1);
+    assertThat(pool.getHitCount()).isEqualTo(1);
+    assertThat(pool.getIdleCount()).isEqualTo(1);
+    assertThat(executorInterceptor.isExecutorClosed()).as("should keep the pooled Executor open").isFalse();
+
+    // the local cache is cleared and the connection released between uses
+    assertExecuteCount(1);
+    assertThat(connectionTwo.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+    assertConnectionClosed(connectionTwo);
+  }
+
+  @Test
+  void testTransactionalSessionIsNotPooled() {
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+
+    txManager.commit(status);
+
+    assertThat(pool.getMissCount()).isZero();
+    assertThat(pool.getHitCount()).isZero();
+    assertThat(pool.getIdleCount()).isZero();
+    assertCommit();
+  }
+
+  @Test
+  void testPoolIsBounded() {
+    SqlSession first = borrow(ExecutorType.SIMPLE).getSqlSession();
+    SqlSession second = borrow(ExecutorType.SIMPLE).getSqlSession();
+    SqlSession third = borrow(ExecutorType.SIMPLE).getSqlSession();
+    SqlSessionUtils.closeSqlSession(first, sqlSessionFactory);
+    SqlSessionUtils.closeSqlSession(second, sqlSessionFactory);
+    SqlSessionUtils.closeSqlSession(third, sqlSessionFactory);
+
+    assertThat(pool.getMissCount()).isEqualTo(3);
+    assertThat(pool.getIdleCount()).isEqualTo(2);
+    assertThat(pool.getDiscardCount()).isEqualTo(1);
+
+    // no statement was executed, so no connection was fetched
+    connection = null;
+  }
+
+  @Test
+  void testSessionsArePooledPerExecutorType() {
+    SqlSessionUtils.closeSqlSession(borrow(ExecutorType.BATCH).getSqlSession(), sqlSessionFactory);
+
+    SqlSessionUtils.closeSqlSession(borrow(ExecutorType.SIMPLE).getSqlSession(), sqlSessionFactory);
+
+    assertThat(pool.getMissCount()).isEqualTo(2);
+    assertThat(pool.getIdleCount()).isEqualTo(2);
+
+    connection = null;
+  }
+
+  @Test
+  void testPooledSessionIsReported() {
+    SqlSessionContext first = borrow(ExecutorType.SIMPLE);
+    SqlSessionUtils.closeSqlSession(first.getSqlSession(), sqlSessionFactory);
+    SqlSessionContext second = borrow(ExecutorType.SIMPLE);
+    SqlSessionUtils.closeSqlSession(second.getSqlSession(), sqlSessionFactory);
+
+    assertThat(first.isSqlSessionReused()).isFalse();
+    assertThat(second.isSqlSessionReused()).as("a pool hit should be reported as reused").isTrue();
+
+    connection = null;
+  }
+
+  @Test
+  void testPendingBatchStatementsAreDiscardedOnRecycle() {
+    SqlSession session = borrow(ExecutorType.BATCH).getSqlSession();
+    session.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    SqlSessionUtils.closeSqlSession(session, sqlSessionFactory);
+
+    // like SqlSession#close(), returning the session must not execute the pending batch
+    assertThat(pool.getIdleCount()).isEqualTo(1);
+    assertExecuteCount(0);
+    assertConnectionClosed(connection);
+  }
+
+  @Test
+  void testPoolMustMatchTemplateFactory() {
+    SqlSessionTemplate otherTemplate = new SqlSessionTemplate(
+        new SqlSessionFactoryBuilder().build(sqlSessionFactory.getConfiguration()));
+
+    assertThrows(IllegalArgumentException.class, () -> otherTemplate.setSqlSessionPool(pool));
+
+    connection = null;
+  }
+
+  @Test
+  void testRequiresSpringManagedTransactionFactory() {
+    Configuration configuration = new Configuration(
+        new Environment("non-spring", new JdbcTransactionFactory(), dataSource));
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new SqlSessionPool(new SqlSessionFactoryBuilder().build(configuration), 2));
+
+    connection = null;
+  }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,11 +18,22 @@ package org.mybatis.spring;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
 import java.sql.SQLException;
+import java.util.function.Supplier;
 
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -36,7 +47,7 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 // MapperFactoryBeanTest handles testing the transactional functions in SqlSessionTemplate
 public class SqlSessionTemplateTest extends AbstractMyBatisSpringTest {
 
-  private static SqlSession sqlSessionTemplate;
+  private static SqlSessionTemplate sqlSessionTemplate;
 
   @BeforeAll
   static void setupSqlTemplate() {
@@ -148,6 +159,38 @@ public class SqlSessionTemplateTest extends AbstractMyBatisSpringTest {
     }
   }
 
+  @Test
+  void testExceptionTranslationOnInsertShouldThrowDataAccessException() {
+
+    // this query must be the same as the query in TestMapper.xml
+    connection.getPreparedStatementResultSetHandler().prepareThrowsSQLException("INSERT fail");
+
+    assertThrows(DataAccessException.class,
+        () -> sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertFail"));
+    assertThat(executorInterceptor.isExecutorClosed()).as("should close the SqlSession on failure").isTrue();
+  }
+
+  @Test
+  void testTemplateWithNoTxDirectInsert() {
+
+    sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    assertCommit();
+    assertThat(executorInterceptor.isExecutorClosed()).as("should close the SqlSession").isTrue();
+  }
+
+  @Test
+  void testExecuteRunsStatementsOverOneSqlSession() {
+
+    sqlSessionTemplate.execute(sqlSession -> {
+      sqlSession.selectOne("org.mybatis.spring.TestMapper.findTest");
+      return sqlSession.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    });
+
+    assertCommit();
+    assertSingleConnection();
+    assertExecuteCount(2);
+  }
+
   @Test
   void testTemplateWithNoTxInsert() {
 
@@ -165,6 +208,44 @@ public class SqlSessionTemplateTest extends AbstractMyBatisSpringTest {
 
   }
 
+  @Test
+  void testTemplateWithNoTxSelectAndNoneReadOnlyCompletion() {
+    sqlSessionTemplate.setReadOnlyCompletionPolicy(ReadOnlyCompletionPolicy.NONE);
+    try {
+      sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    } finally {
+      sqlSessionTemplate.setReadOnlyCompletionPolicy(null);
+    }
+
+    assertNoCommitJdbc();
+    assertThat(executorInterceptor.isExecutorClosed()).as("should close the SqlSession").isTrue();
+  }
+
+  @Test
+  void testTemplateWithNoTxSelectAndRollbackReadOnlyCompletion() {
+    sqlSessionTemplate.setReadOnlyCompletionPolicy(ReadOnlyCompletionPolicy.ROLLBACK);
+    try {
+      sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    } finally {
+      sqlSessionTemplate.setReadOnlyCompletionPolicy(null);
+    }
+
+    assertThat(connection.getNumberCommits()).as("should not call commit on Connection").isEqualTo(0);
+    assertThat(connection.getNumberRollbacks()).as("should call rollback on Connection").isEqualTo(1);
+  }
+
+  @Test
+  void testTemplateWithNoTxInsertAndNoneReadOnlyCompletion() {
+    sqlSessionTemplate.setReadOnlyCompletionPolicy(ReadOnlyCompletionPolicy.NONE);
+    try {
+      sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    } finally {
+      sqlSessionTemplate.setReadOnlyCompletionPolicy(null);
+    }
+
+    assertCommit();
+  }
+
   @Test
   void testWithTxRequired() {
     DefaultTransactionDefinition txDef = new DefaultTransactionDefinition();
@@ -180,4 +261,173 @@ public class SqlSessionTemplateTest extends AbstractMyBatisSpringTest {
     assertSingleConnection();
   }
 
+  @Test
+  void testMetricsWithNoTx() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    SqlSessionTemplate template = new SqlSessionTemplate(sqlSessionFactory);
+    template.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(registry));
+
+    template.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    template.getMapper(TestMapper.class).findTest();
+
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC)
+        .tag("statement", "org.mybatis.spring.TestMapper.insertTest").timer().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC)
+        .tag("statement", "org.mybatis.spring.TestMapper.findTest").timer().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.SESSION_ACQUIRED_METRIC).tag("transactional", "false")
+        .tag("reused", "false").counter().count()).isEqualTo(2);
+    assertThat(registry.find(MicrometerSqlSessionMetrics.STATEMENT_ERRORS_METRIC).counter()).isNull();
+  }
+
+  @Test
+  void testMetricsWithTx() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    SqlSessionTemplate template = new SqlSessionTemplate(sqlSessionFactory);
+    template.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(registry));
+
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+    template.getMapper(TestMapper.class).findTest();
+    template.getMapper(TestMapper.class).insertTest("test1");
+    txManager.commit(status);
+
+    assertThat(registry.get(MicrometerSqlSessionMetrics.SESSION_ACQUIRED_METRIC).tag("transactional", "true")
+        .tag("reused", "false").counter().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.SESSION_ACQUIRED_METRIC).tag("transactional", "true")
+        .tag("reused", "true").counter().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.SESSION_ACQUIRED_METRIC).tag("transactional", "false")
+        .counter().count()).isEqualTo(0);
+  }
+
+  @Test
+  void testMetricsOnTranslatedException() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    SqlSessionTemplate template = new SqlSessionTemplate(sqlSessionFactory);
+    template.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(registry));
+
+    // this query must be the same as the query in TestMapper.xml
+    connection.getPreparedStatementResultSetHandler().prepareThrowsSQLException("INSERT fail");
+
+    DataAccessException exception = assertThrows(DataAccessException.class,
+        () -> template.insert("org.mybatis.spring.TestMapper.insertFail"));
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_ERRORS_METRIC)
+        .tag("statement", "org.mybatis.spring.TestMapper.insertFail")
+        .tag("exception", exception.getClass().getSimpleName()).counter().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC)
+        .tag("statement", "org.mybatis.spring.TestMapper.insertFail").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  void testMetricsOnUntranslatedFailures() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    SqlSessionTemplate failingStatement = stubTemplate(stubSqlSession(() -> {
+      throw new IllegalArgumentException("from a plugin");
+    }));
+    failingStatement.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(registry));
+    SqlSessionTemplate failingSession = stubTemplate(() -> {
+      throw new NoClassDefFoundError("com/example/Driver");
+    });
+    failingSession.setSqlSessionMetrics(new MicrometerSqlSessionMetrics(registry));
+
+    assertThrows(IllegalArgumentException.class, () -> failingStatement.update("failingStatement", null));
+    assertThrows(NoClassDefFoundError.class, () -> failingSession.update("failingSession", null));
+
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_ERRORS_METRIC).tag("statement", "failingStatement")
+        .tag("exception", "IllegalArgumentException").counter().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_ERRORS_METRIC).tag("statement", "failingSession")
+        .tag("exception", "NoClassDefFoundError").counter().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC).tag("statement", "failingSession").timer()
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testMetricsStatementTagsAreBounded() {
+    MeterRegistry registry = new SimpleMeterRegistry();
+    MicrometerSqlSessionMetrics metrics = new MicrometerSqlSessionMetrics(registry, Tags.of("factory", "test"), 1);
+
+    metrics.statementExecuted("first", 1000L, null);
+    metrics.statementExecuted("second", 1000L, null);
+    metrics.statementExecuted("first", 1000L, null);
+
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC).tag("factory", "test")
+        .tag("statement", "first").timer().count()).isEqualTo(2);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC).tag("factory", "test")
+        .tag("statement", MicrometerSqlSessionMetrics.OTHER_STATEMENTS).timer().count()).isEqualTo(1);
+    assertThat(registry.get(MicrometerSqlSessionMetrics.STATEMENT_METRIC).timers()).hasSize(2);
+  }
+
+  @Test
+  void testWriteDoesNotBoxTheUpdateCount() {
+    com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean();
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+    // the BatchExecutor update count is not in the Integer cache, 1 is
+    SqlSessionTemplate batchTemplate = stubTemplate(BatchExecutor.BATCH_UPDATE_RETURN_VALUE);
+    SqlSessionTemplate simpleTemplate = stubTemplate(1);
+    int calls = 100_000;
+    // warm up, so that the compiled code is measured
+    allocatedBytes(threadMXBean, batchTemplate, calls);
+    allocatedBytes(threadMXBean, simpleTemplate, calls);
+
+    long batchBytes = allocatedBytes(threadMXBean, batchTemplate, calls);
+    long simpleBytes = allocatedBytes(threadMXBean, simpleTemplate, calls);
+
+    // boxing the batch update count would allocate an Integer of at least 16 bytes per call
+    assertThat(batchBytes - simpleBytes).isLessThan(calls * 8L);
+  }
+
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threadMXBean, SqlSessionTemplate template,
+      int calls) {
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < calls; i++) {
+      template.update("update", null);
+    }
+    return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  /**
+   * Creates a template over a session that returns the given update count without running anything, so that the
+   * allocations measured are the ones of the template.
+   */
+  private static SqlSessionTemplate stubTemplate(int updateCount) {
+    Integer boxedUpdateCount = updateCount;
+    SqlSession sqlSession = stubSqlSession(() -> boxedUpdateCount);
+    return stubTemplate(() -> sqlSession);
+  }
+
+  /**
+   * Creates a session whose update methods are answered by the given supplier, and whose other methods do nothing.
+   */
+  private static SqlSession stubSqlSession(Supplier<Object> update) {
+    return (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(), new Class<?>[] { SqlSession.class },
+        (proxy, method, args) -> stubCall(proxy, method.getName(), args,
+            "update".equals(method.getName()) ? update : () -> null));
+  }
+
+  /**
+   * Creates a template over a factory whose sessions are opened by the given supplier.
+   */
+  private static SqlSessionTemplate stubTemplate(Supplier<Object> openSession) {
+    Configuration configuration = new Configuration();
+    SqlSessionFactory stubSqlSessionFactory = (SqlSessionFactory) Proxy.newProxyInstance(
+        SqlSessionFactory.class.getClassLoader(), new Class<?>[] { SqlSessionFactory.class },
+        (proxy, method, args) -> stubCall(proxy, method.getName(), args,
+            "getConfiguration".equals(method.getName()) ? () -> configuration : openSession));
+    return new SqlSessionTemplate(stubSqlSessionFactory);
+  }
+
+  private static Object stubCall(Object proxy, String methodName, Object[] args, Supplier<Object> result) {
+    switch (methodName) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      case "toString":
+        return "stub";
+      default:
+        return result.get();
+    }
+  }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,10 +15,13 @@
  */
 package org.mybatis.spring.batch;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -26,11 +29,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.session.ExecutorType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -38,8 +44,19 @@ import org.mockito.MockitoAnnotations;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.batch.domain.Employee;
 import org.springframework.batch.item.Chunk;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.InvalidDataAccessResourceUsageException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
 
 /**
  * @author Putthiphong Boonphong
@@ -124,4 +141,275 @@ class MyBatisBatchItemWriterTest {
 
   }
 
+  @Test
+  void testStatementIdClassifierGroupsItemsByStatement() {
+    Employee first = employee(1, "first");
+    Employee second = employee(0, "second");
+    Employee third = employee(3, "third");
+    this.writer.setStatementIdClassifier(item -> item.getId() == 0 ? "insertEmployee" : "updateEmployee");
+
+    BatchResult updates = new BatchResult(null, null);
+    updates.setUpdateCounts(new int[] { 1, 1 });
+    BatchResult inserts = new BatchResult(null, null);
+    inserts.setUpdateCounts(new int[] { 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(updates, inserts));
+
+    writer.write(Chunk.of(first, second, third));
+
+    InOrder inOrder = Mockito.inOrder(this.mockSqlSessionTemplate);
+    inOrder.verify(this.mockSqlSessionTemplate).update("updateEmployee", first);
+    inOrder.verify(this.mockSqlSessionTemplate).update("updateEmployee", third);
+    inOrder.verify(this.mockSqlSessionTemplate).update("insertEmployee", second);
+    inOrder.verify(this.mockSqlSessionTemplate).flushStatements();
+  }
+
+  @Test
+  void testStatementIdClassifierReportsOriginalItemIndex() {
+    Employee first = employee(1, "first");
+    Employee second = employee(0, "second");
+    Employee third = employee(3, "third");
+    this.writer.setStatementIdClassifier(item -> item.getId() == 0 ? "insertEmployee" : "updateEmployee");
+
+    BatchResult updates = new BatchResult(null, null);
+    updates.setUpdateCounts(new int[] { 1, 0 });
+    BatchResult inserts = new BatchResult(null, null);
+    inserts.setUpdateCounts(new int[] { 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(updates, inserts));
+
+    EmptyResultDataAccessException e = assertThrows(EmptyResultDataAccessException.class,
+        () -> writer.write(Chunk.of(first, second, third)));
+    assertThat(e.getMessage()).startsWith("Item 2 of 3 did not update any rows with statement 'updateEmployee'");
+  }
+
+  @Test
+  void testStatementIdClassifierWithMissingUpdateCounts() {
+    this.writer.setStatementIdClassifier(item -> "updateEmployee");
+
+    BatchResult batchResult = new BatchResult(null, null);
+    batchResult.setUpdateCounts(new int[] { 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(batchResult));
+
+    assertThrows(InvalidDataAccessResourceUsageException.class,
+        () -> writer.write(Chunk.of(new Employee(), new Employee())));
+  }
+
+  @Test
+  void testMaxBatchSizeFlushesSubBatches() {
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setMaxBatchSize(2);
+
+    BatchResult full = new BatchResult(null, null);
+    full.setUpdateCounts(new int[] { 1, 1 });
+    BatchResult last = new BatchResult(null, null);
+    last.setUpdateCounts(new int[] { 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(full), List.of(full), List.of(last));
+
+    writer.write(Chunk.of(new Employee(), new Employee(), new Employee(), new Employee(), new Employee()));
+
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(5)).update(Mockito.eq("updateEmployee"),
+        Mockito.any(Employee.class));
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(3)).flushStatements();
+  }
+
+  @Test
+  void testMaxBatchSizeReportsIndexInChunk() {
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setMaxBatchSize(2);
+
+    BatchResult first = new BatchResult(null, null);
+    first.setUpdateCounts(new int[] { 1, 1 });
+    BatchResult second = new BatchResult(null, null);
+    second.setUpdateCounts(new int[] { 1, 0 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(first), List.of(second));
+
+    EmptyResultDataAccessException e = assertThrows(EmptyResultDataAccessException.class, () -> writer
+        .write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d"), employee(5, "e"))));
+    assertThat(e.getMessage()).startsWith("Item 3 of 5 did not update any rows");
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(2)).flushStatements();
+  }
+
+  @Test
+  void testMaxBatchSizeWithStatementIdClassifier() {
+    this.writer.setMaxBatchSize(2);
+    this.writer.setStatementIdClassifier(item -> item.getId() == 0 ? "insertEmployee" : "updateEmployee");
+
+    BatchResult updates = new BatchResult(null, null);
+    updates.setUpdateCounts(new int[] { 1, 1 });
+    BatchResult insert = new BatchResult(null, null);
+    insert.setUpdateCounts(new int[] { 0 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(updates), List.of(insert));
+
+    EmptyResultDataAccessException e = assertThrows(EmptyResultDataAccessException.class,
+        () -> writer.write(Chunk.of(employee(1, "a"), employee(0, "b"), employee(3, "c"))));
+    assertThat(e.getMessage()).startsWith("Item 1 of 3 did not update any rows with statement 'insertEmployee'");
+  }
+
+  @Test
+  void testPartitionsWriteAndCommitEachPartition() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    given(transactionManager.getTransaction(Mockito.any())).willAnswer(invocation -> new SimpleTransactionStatus());
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    this.writer.setTransactionManager(transactionManager);
+
+    BatchResult result = new BatchResult(null, null);
+    result.setUpdateCounts(new int[] { 1, 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(result));
+
+    writer.write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d")));
+
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(4)).update(Mockito.eq("updateEmployee"),
+        Mockito.any(Employee.class));
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(2)).flushStatements();
+    Mockito.verify(transactionManager, Mockito.times(2)).commit(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.never()).rollback(Mockito.any());
+  }
+
+  @Test
+  void testPartitionsRollbackAllPartitionsOnFailure() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    given(transactionManager.getTransaction(Mockito.any())).willAnswer(invocation -> new SimpleTransactionStatus());
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    this.writer.setTransactionManager(transactionManager);
+
+    BatchResult result = new BatchResult(null, null);
+    result.setUpdateCounts(new int[] { 1, 0 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(result));
+
+    EmptyResultDataAccessException e = assertThrows(EmptyResultDataAccessException.class,
+        () -> writer.write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d"))));
+    assertThat(e.getMessage()).matches("Item [23] of 4 did not update any rows.*");
+    Mockito.verify(transactionManager, Mockito.times(2)).rollback(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.never()).commit(Mockito.any());
+  }
+
+  @Test
+  void testPartitionCommitFailureRollsBackChunk() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    given(transactionManager.getTransaction(Mockito.any())).willAnswer(invocation -> new SimpleTransactionStatus());
+    // 只有第一个提交的分区失败
+    willThrow(new TransactionSystemException("Could not commit the partition")).willDoNothing()
+        .given(transactionManager).commit(Mockito.any(TransactionStatus.class));
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    this.writer.setTransactionManager(transactionManager);
+
+    BatchResult result = new BatchResult(null, null);
+    result.setUpdateCounts(new int[] { 1, 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(result));
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      writer.write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d")));
+      Mockito.verify(transactionManager, Mockito.never()).commit(Mockito.any());
+
+      // the chunk transaction commits: the failure must reach it before it is committed
+      TransactionSystemException e = assertThrows(TransactionSystemException.class,
+          () -> TransactionSynchronizationUtils.triggerBeforeCommit(false));
+      assertThat(e.getMessage()).isEqualTo("Could not commit the partition");
+      TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+          TransactionSynchronization.STATUS_ROLLED_BACK);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    Mockito.verify(transactionManager, Mockito.times(2)).commit(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.never()).rollback(Mockito.any());
+  }
+
+  @Test
+  void testPartitionsRollbackWhenChunkRollsBack() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    given(transactionManager.getTransaction(Mockito.any())).willAnswer(invocation -> new SimpleTransactionStatus());
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    this.writer.setTransactionManager(transactionManager);
+
+    BatchResult result = new BatchResult(null, null);
+    result.setUpdateCounts(new int[] { 1, 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(result));
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      writer.write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d")));
+      TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+          TransactionSynchronization.STATUS_ROLLED_BACK);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    Mockito.verify(transactionManager, Mockito.times(2)).rollback(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.never()).commit(Mockito.any());
+  }
+
+  @Test
+  void testPartitionsOnSingleThreadExecutorFailInsteadOfWaiting() {
+    PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    given(transactionManager.getTransaction(Mockito.any())).willAnswer(invocation -> new SimpleTransactionStatus());
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTaskExecutor(new TaskExecutorAdapter(executorService));
+    this.writer.setTransactionManager(transactionManager);
+    this.writer.setPartitionStartTimeout(Duration.ofMillis(100));
+
+    BatchResult result = new BatchResult(null, null);
+    result.setUpdateCounts(new int[] { 1, 1 });
+    given(mockSqlSessionTemplate.flushStatements()).willReturn(List.of(result));
+
+    try {
+      IllegalStateException e = assertThrows(IllegalStateException.class,
+          () -> writer.write(Chunk.of(employee(1, "a"), employee(2, "b"), employee(3, "c"), employee(4, "d"))));
+      assertThat(e.getMessage()).startsWith("The partition did not start within PT0.1S.");
+    } finally {
+      executorService.shutdown();
+    }
+
+    // the partition that started is rolled back, the other one is never written
+    Mockito.verify(this.mockSqlSessionTemplate, Mockito.times(2)).update(Mockito.eq("updateEmployee"),
+        Mockito.any(Employee.class));
+    Mockito.verify(transactionManager, Mockito.times(1)).rollback(Mockito.any());
+    Mockito.verify(transactionManager, Mockito.never()).commit(Mockito.any());
+  }
+
+  @Test
+  void testUndersizedTaskExecutorIsRejected() {
+    given(mockSqlSessionTemplate.getExecutorType()).willReturn(ExecutorType.BATCH);
+    this.writer.setStatementId("updateEmployee");
+    this.writer.setPartitions(2);
+    this.writer.setPartitionKeyConverter(Employee::getId);
+    this.writer.setTransactionManager(Mockito.mock(PlatformTransactionManager.class));
+
+    this.writer.setTaskExecutor(new SyncTaskExecutor());
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> writer.afterPropertiesSet());
+    assertThat(e.getMessage())
+        .isEqualTo("The taskExecutor runs at most 0 tasks at the same time, but partitions is 2.");
+
+    ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+    threadPoolTaskExecutor.setCorePoolSize(1);
+    threadPoolTaskExecutor.setMaxPoolSize(4);
+    this.writer.setTaskExecutor(threadPoolTaskExecutor);
+    assertThrows(IllegalArgumentException.class, () -> writer.afterPropertiesSet());
+
+    threadPoolTaskExecutor.setQueueCapacity(0);
+    writer.afterPropertiesSet();
+  }
+
+  private static Employee employee(int id, String name) {
+    Employee employee = new Employee();
+    employee.setId(id);
+    employee.setName(name);
+    return employee;
+  }
+
 }
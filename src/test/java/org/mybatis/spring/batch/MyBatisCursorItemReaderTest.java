@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,13 +15,23 @@
  */
 package org.mybatis.spring.batch;
 
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -33,6 +43,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 
 /**
  * Tests for {@link MyBatisCursorItemReader}.
@@ -80,6 +91,225 @@ class MyBatisCursorItemReaderTest {
 
   }
 
+  @Test
+  void testRestartSkipsReadRowsWithRowBounds() throws Exception {
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(Collections.<Object> singletonList(new Foo("foo3")).iterator());
+    Mockito.when(this.sqlSession.selectCursor(Mockito.eq("selectFoo"), Mockito.eq(Collections.emptyMap()),
+        Mockito.argThat(rowBounds -> rowBounds.getOffset() == 2))).thenReturn(this.cursor);
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.afterPropertiesSet();
+
+    ExecutionContext executionContext = new ExecutionContext();
+    executionContext.putInt("MyBatisCursorItemReader.read.count", 2);
+    itemReader.open(executionContext);
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+    Assertions.assertThat(itemReader.read()).isNull();
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.getInt("MyBatisCursorItemReader.read.count")).isEqualTo(3);
+    itemReader.close();
+  }
+
+  @Test
+  void testCurrentItemCountSkipsRowsWithoutSavedContext() throws Exception {
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(Collections.<Object> singletonList(new Foo("foo3")).iterator());
+    Mockito.when(this.sqlSession.selectCursor(Mockito.eq("selectFoo"), Mockito.eq(Collections.emptyMap()),
+        Mockito.argThat(rowBounds -> rowBounds.getOffset() == 2))).thenReturn(this.cursor);
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setCurrentItemCount(2);
+    itemReader.afterPropertiesSet();
+
+    ExecutionContext executionContext = new ExecutionContext();
+    itemReader.open(executionContext);
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+    Assertions.assertThat(itemReader.read()).isNull();
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.getInt("MyBatisCursorItemReader.read.count")).isEqualTo(3);
+    itemReader.close();
+  }
+
+  @Test
+  void testRestartSeeksPastLastKey() throws Exception {
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(Collections.<Object> singletonList(new Foo("foo3")).iterator());
+    Mockito.when(this.sqlSession.selectCursor("selectFoo", Collections.singletonMap("_lastKey", "foo2")))
+        .thenReturn(this.cursor);
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setSortKeyConverter(Foo::getName);
+    itemReader.afterPropertiesSet();
+
+    ExecutionContext executionContext = new ExecutionContext();
+    executionContext.putInt("MyBatisCursorItemReader.read.count", 2);
+    executionContext.put("MyBatisCursorItemReader.last.key", "foo2");
+    itemReader.open(executionContext);
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.getInt("MyBatisCursorItemReader.read.count")).isEqualTo(3);
+    Assertions.assertThat(executionContext.get("MyBatisCursorItemReader.last.key")).isEqualTo("foo3");
+    itemReader.close();
+  }
+
+  @Test
+  void testQueueCapacityReadsOnProducerThread() throws Exception {
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(getFoos().iterator());
+    Mockito.when(this.sqlSession.selectCursor("selectFoo", Collections.emptyMap())).thenReturn(this.cursor);
+    Mockito.when(this.sqlSessionFactory.getConfiguration()).thenReturn(new Configuration());
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setQueueCapacity(1);
+    itemReader.afterPropertiesSet();
+
+    itemReader.open(new ExecutionContext());
+    try {
+      Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo1");
+      Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo2");
+      Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+      Assertions.assertThat(itemReader.read()).isNull();
+      Assertions.assertThat(itemReader.read()).isNull();
+    } finally {
+      itemReader.close();
+    }
+    Mockito.verify(this.cursor).close();
+    Mockito.verify(this.sqlSession).close();
+  }
+
+  @Test
+  void testQueueCapacityPropagatesCursorFailure() throws Exception {
+    Iterator<Object> failingIterator = new Iterator<Object>() {
+      private boolean first = true;
+
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Object next() {
+        if (first) {
+          first = false;
+          return new Foo("foo1");
+        }
+        throw new IllegalStateException("fetch failed.");
+      }
+    };
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(failingIterator);
+    Mockito.when(this.sqlSession.selectCursor("selectFoo", Collections.emptyMap())).thenReturn(this.cursor);
+    Mockito.when(this.sqlSessionFactory.getConfiguration()).thenReturn(new Configuration());
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setQueueCapacity(10);
+    itemReader.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    itemReader.afterPropertiesSet();
+
+    itemReader.open(new ExecutionContext());
+    try {
+      Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo1");
+      Assertions.assertThatThrownBy(itemReader::read).isInstanceOf(IllegalStateException.class)
+          .hasMessage("fetch failed.");
+    } finally {
+      itemReader.close();
+    }
+    Mockito.verify(this.cursor).close();
+  }
+
+  @Test
+  void testCloseStopsBlockedProducer() throws Exception {
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(getFoos().iterator());
+    Mockito.when(this.sqlSession.selectCursor("selectFoo", Collections.emptyMap())).thenReturn(this.cursor);
+    Mockito.when(this.sqlSessionFactory.getConfiguration()).thenReturn(new Configuration());
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setQueueCapacity(1);
+    itemReader.setTaskExecutor(new SimpleAsyncTaskExecutor());
+    itemReader.afterPropertiesSet();
+
+    itemReader.open(new ExecutionContext());
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo1");
+    itemReader.close();
+
+    Mockito.verify(this.cursor).close();
+    Mockito.verify(this.sqlSession).close();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testCloseCancelsProducerThatNeverStarted() throws Exception {
+    Iterator<Object> iterator = Mockito.mock(Iterator.class);
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    Mockito.when(this.cursor.iterator()).thenReturn(iterator);
+    Mockito.when(this.sqlSession.selectCursor("selectFoo", Collections.emptyMap())).thenReturn(this.cursor);
+    Mockito.when(this.sqlSessionFactory.getConfiguration()).thenReturn(new Configuration());
+
+    // a saturated executor that only queues the task
+    List<Runnable> queuedTasks = new ArrayList<>();
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setQueueCapacity(1);
+    itemReader.setTaskExecutor(queuedTasks::add);
+    itemReader.afterPropertiesSet();
+
+    itemReader.open(new ExecutionContext());
+    assertTimeoutPreemptively(Duration.ofSeconds(5), itemReader::close);
+    Mockito.verify(this.cursor).close();
+    Mockito.verify(this.sqlSession).close();
+
+    // the producer does nothing when the executor finally runs it
+    Assertions.assertThat(queuedTasks).hasSize(1);
+    queuedTasks.get(0).run();
+    Mockito.verifyNoInteractions(iterator);
+  }
+
+  @Test
+  void testQueueCapacityRejectsLazyLoading() {
+    Configuration configuration = new Configuration();
+    ResultMapping lazyMapping = new ResultMapping.Builder(configuration, "bar").column("bar_id")
+        .nestedQueryId("selectBar").lazy(true).build();
+    ResultMap resultMap = new ResultMap.Builder(configuration, "fooResult", Foo.class, List.of(lazyMapping)).build();
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "selectFoo",
+        new StaticSqlSource(configuration, "SELECT * FROM foo"), SqlCommandType.SELECT).resultMaps(List.of(resultMap))
+        .build());
+    Mockito.when(this.sqlSessionFactory.getConfiguration()).thenReturn(configuration);
+
+    MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
+    itemReader.setSqlSessionFactory(this.sqlSessionFactory);
+    itemReader.setQueryId("selectFoo");
+    itemReader.setQueueCapacity(10);
+    itemReader.setTaskExecutor(new SimpleAsyncTaskExecutor());
+
+    try {
+      Assertions.assertThatThrownBy(() -> itemReader.open(new ExecutionContext()))
+          .isInstanceOf(ItemStreamException.class).cause().isInstanceOf(IllegalStateException.class)
+          .hasMessage("Lazy loading is not supported with a queueCapacity, but statement 'selectFoo' has lazy loaded"
+              + " properties.");
+    } finally {
+      itemReader.close();
+    }
+    Mockito.verify(this.sqlSessionFactory, Mockito.never()).openSession(Mockito.any(ExecutorType.class));
+  }
+
   @Test
   void testCloseBeforeOpen() {
     MyBatisCursorItemReader<Foo> itemReader = new MyBatisCursorItemReader<>();
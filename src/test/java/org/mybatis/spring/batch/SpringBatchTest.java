@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2023 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -45,6 +45,10 @@ class SpringBatchTest {
   @Qualifier("cursorNestedItemReader")
   private MyBatisCursorItemReader<Employee> cursorNestedItemReader;
 
+  @Autowired
+  @Qualifier("cursorStreamingItemReader")
+  private MyBatisCursorItemReader<Employee> cursorStreamingItemReader;
+
   @Autowired
   private MyBatisBatchItemWriter<Employee> writer;
 
@@ -125,4 +129,26 @@ class SpringBatchTest {
       cursorNestedItemReader.doClose();
     }
   }
+
+  @Test
+  @Transactional
+  void checkCursorReadingWithStreamingHints() throws Exception {
+    cursorStreamingItemReader.doOpen();
+    try {
+      Chunk<Employee> employees = new Chunk<>();
+      Employee employee = cursorStreamingItemReader.read();
+      while (employee != null) {
+        employee.setSalary(employee.getSalary() * 2);
+        employees.add(employee);
+        employee = cursorStreamingItemReader.read();
+      }
+      writer.write(employees);
+
+      assertThat((Integer) session.selectOne("checkSalarySum")).isEqualTo(20000);
+      assertThat((Integer) session.selectOne("checkEmployeeCount")).isEqualTo(employees.size());
+    } finally {
+      cursorStreamingItemReader.doClose();
+    }
+  }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import javax.sql.DataSource;
 
@@ -37,6 +38,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mybatis.spring.batch.MyBatisPagingItemReader;
 import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.task.SyncTaskExecutor;
 
 /**
  * Tests for {@link MyBatisPagingItemReaderBuilder}.
@@ -178,6 +180,97 @@ class MyBatisPagingItemReaderBuilderTest {
     Assertions.assertThat(itemReader.read()).isNull();
   }
 
+  @Test
+  void testConfigurationSortKeyConverter() throws Exception {
+    Mockito.when(this.sqlSession.selectList(Mockito.eq("selectFoo"), lastKey(null)))
+        .thenReturn(Arrays.asList(new Foo("foo1"), new Foo("foo2")));
+    Mockito.when(this.sqlSession.selectList(Mockito.eq("selectFoo"), lastKey("foo2")))
+        .thenReturn(Arrays.asList(new Foo("foo3"), new Foo("foo4")));
+    Mockito.when(this.sqlSession.selectList(Mockito.eq("selectFoo"), lastKey("foo4")))
+        .thenReturn(Collections.emptyList());
+
+    // @formatter:off
+    MyBatisPagingItemReader<Foo> itemReader = new MyBatisPagingItemReaderBuilder<Foo>()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectFoo")
+            .pageSize(2)
+            .sortKeyConverter(Foo::getName)
+            .build();
+    // @formatter:on
+    itemReader.afterPropertiesSet();
+
+    ExecutionContext executionContext = new ExecutionContext();
+    itemReader.open(executionContext);
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo1");
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo2");
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.get("MyBatisPagingItemReader.last.key")).isEqualTo("foo2");
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.getInt("MyBatisPagingItemReader.read.count")).isEqualTo(3);
+    Assertions.assertThat(executionContext.get("MyBatisPagingItemReader.last.key")).isEqualTo("foo2");
+    itemReader.close();
+
+    // @formatter:off
+    MyBatisPagingItemReader<Foo> restartedReader = new MyBatisPagingItemReaderBuilder<Foo>()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectFoo")
+            .pageSize(2)
+            .sortKeyConverter(Foo::getName)
+            .build();
+    // @formatter:on
+    restartedReader.afterPropertiesSet();
+    restartedReader.open(executionContext);
+
+    Assertions.assertThat(restartedReader.read()).extracting(Foo::getName).isEqualTo("foo4");
+    Assertions.assertThat(restartedReader.read()).isNull();
+    Mockito.verify(this.sqlSession, Mockito.times(2)).selectList(Mockito.eq("selectFoo"), lastKey("foo2"));
+  }
+
+  @Test
+  void testConfigurationPrefetchPages() throws Exception {
+    Mockito.when(this.sqlSession.selectList(Mockito.eq("selectFoo"), page(0)))
+        .thenReturn(Arrays.asList(new Foo("foo1"), new Foo("foo2")));
+    Mockito.when(this.sqlSession.selectList(Mockito.eq("selectFoo"), page(1)))
+        .thenReturn(Collections.singletonList(new Foo("foo3")));
+
+    // @formatter:off
+    MyBatisPagingItemReader<Foo> itemReader = new MyBatisPagingItemReaderBuilder<Foo>()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectFoo")
+            .pageSize(2)
+            .prefetchPages(1)
+            .taskExecutor(new SyncTaskExecutor())
+            .build();
+    // @formatter:on
+    itemReader.afterPropertiesSet();
+
+    ExecutionContext executionContext = new ExecutionContext();
+    itemReader.open(executionContext);
+
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo1");
+    Mockito.verify(this.sqlSession).selectList(Mockito.eq("selectFoo"), page(1));
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo2");
+    Assertions.assertThat(itemReader.read()).extracting(Foo::getName).isEqualTo("foo3");
+    Assertions.assertThat(itemReader.read()).isNull();
+
+    itemReader.update(executionContext);
+    Assertions.assertThat(executionContext.getInt("MyBatisPagingItemReader.read.count")).isEqualTo(3);
+    Mockito.verify(this.sqlSession, Mockito.never()).selectList(Mockito.eq("selectFoo"), page(2));
+  }
+
+  private static Object page(int page) {
+    return Mockito
+        .argThat(parameter -> parameter instanceof Map && Objects.equals(((Map<?, ?>) parameter).get("_page"), page));
+  }
+
+  private static Object lastKey(Object key) {
+    return Mockito.argThat(parameter -> parameter instanceof Map && ((Map<?, ?>) parameter).containsKey("_lastKey")
+        && Objects.equals(((Map<?, ?>) parameter).get("_lastKey"), key));
+  }
+
   private List<Object> getFoos() {
     return Arrays.asList(new Foo("foo1"), new Foo("foo2"), new Foo("foo3"));
   }
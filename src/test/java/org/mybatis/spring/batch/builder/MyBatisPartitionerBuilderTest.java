@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.batch.builder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mybatis.spring.batch.MyBatisPartitioner;
+import org.springframework.batch.item.ExecutionContext;
+
+/**
+ * Tests for {@link MyBatisPartitionerBuilder}.
+ */
+class MyBatisPartitionerBuilderTest {
+
+  @Mock
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Mock
+  private SqlSession sqlSession;
+
+  private final Map<String, Object> parameters = new HashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    Mockito.when(this.sqlSessionFactory.openSession(ExecutorType.SIMPLE)).thenReturn(this.sqlSession);
+    this.parameters.put("status", "NEW");
+    this.parameters.put("_gridSize", 3);
+  }
+
+  @Test
+  void testConfigurationMinMaxRange() throws Exception {
+    Map<String, Object> range = new HashMap<>();
+    range.put("MINVALUE", 1);
+    range.put("MAXVALUE", 10L);
+    Mockito.when(this.sqlSession.selectList("selectRange", this.parameters))
+        .thenReturn(Collections.singletonList(range));
+
+    // @formatter:off
+    MyBatisPartitioner partitioner = new MyBatisPartitionerBuilder()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectRange")
+            .parameterValues(Collections.singletonMap("status", "NEW"))
+            .build();
+    // @formatter:on
+    partitioner.afterPropertiesSet();
+
+    Map<String, ExecutionContext> partitions = partitioner.partition(3);
+
+    Assertions.assertThat(partitions).containsOnlyKeys("partition0", "partition1", "partition2");
+    assertRange(partitions.get("partition0"), 1L, 5L);
+    assertRange(partitions.get("partition1"), 5L, 9L);
+    assertRange(partitions.get("partition2"), 9L, null);
+    Mockito.verify(this.sqlSession).close();
+  }
+
+  @Test
+  void testConfigurationBoundaryKeys() throws Exception {
+    Mockito.when(this.sqlSession.selectList("selectBoundaries", this.parameters))
+        .thenReturn(Arrays.asList("a", "k", "t"));
+
+    // @formatter:off
+    MyBatisPartitioner partitioner = new MyBatisPartitionerBuilder()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectBoundaries")
+            .parameterValues(Collections.singletonMap("status", "NEW"))
+            .build();
+    // @formatter:on
+    partitioner.afterPropertiesSet();
+
+    Map<String, ExecutionContext> partitions = partitioner.partition(3);
+
+    Assertions.assertThat(partitions).containsOnlyKeys("partition0", "partition1", "partition2");
+    assertRange(partitions.get("partition0"), "a", "k");
+    assertRange(partitions.get("partition1"), "k", "t");
+    assertRange(partitions.get("partition2"), "t", null);
+  }
+
+  @Test
+  void testConfigurationEmptyTable() throws Exception {
+    Mockito.when(this.sqlSession.selectList("selectRange", this.parameters))
+        .thenReturn(Collections.singletonList(null));
+
+    // @formatter:off
+    MyBatisPartitioner partitioner = new MyBatisPartitionerBuilder()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectRange")
+            .parameterValues(Collections.singletonMap("status", "NEW"))
+            .build();
+    // @formatter:on
+    partitioner.afterPropertiesSet();
+
+    Assertions.assertThat(partitioner.partition(3)).isEmpty();
+  }
+
+  @Test
+  void testConfigurationEmptyTableWithNullColumns() throws Exception {
+    Map<String, Object> range = new HashMap<>();
+    range.put("MINVALUE", null);
+    range.put("MAXVALUE", null);
+    Mockito.when(this.sqlSession.selectList("selectRange", this.parameters))
+        .thenReturn(Collections.singletonList(range));
+
+    // @formatter:off
+    MyBatisPartitioner partitioner = new MyBatisPartitionerBuilder()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectRange")
+            .parameterValues(Collections.singletonMap("status", "NEW"))
+            .build();
+    // @formatter:on
+    partitioner.afterPropertiesSet();
+
+    Assertions.assertThat(partitioner.partition(3)).isEmpty();
+  }
+
+  @Test
+  void testConfigurationMisnamedRangeColumns() throws Exception {
+    Map<String, Object> range = new HashMap<>();
+    range.put("min_id", 1);
+    range.put("max_id", 10L);
+    Mockito.when(this.sqlSession.selectList("selectRange", this.parameters))
+        .thenReturn(Collections.singletonList(range));
+
+    // @formatter:off
+    MyBatisPartitioner partitioner = new MyBatisPartitionerBuilder()
+            .sqlSessionFactory(this.sqlSessionFactory)
+            .queryId("selectRange")
+            .parameterValues(Collections.singletonMap("status", "NEW"))
+            .build();
+    // @formatter:on
+    partitioner.afterPropertiesSet();
+
+    Assertions.assertThatThrownBy(() -> partitioner.partition(3)).isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("'minValue'").hasMessageContaining("'maxValue'").hasMessageContaining("min_id");
+  }
+
+  private static void assertRange(ExecutionContext executionContext, Object minValue, Object maxValue) {
+    Assertions.assertThat(executionContext.get(MyBatisPartitioner.MIN_VALUE)).isEqualTo(minValue);
+    Assertions.assertThat(executionContext.get(MyBatisPartitioner.MAX_VALUE)).isEqualTo(maxValue);
+  }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.mockrunner.mock.jdbc.MockDataSource;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.core.io.ClassPathResource;
+
+class SpringCacheTest {
+
+  private static final String NAMESPACE = "org.mybatis.spring.cache.SpringCacheMapper";
+
+  private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
+
+  private final SpringCacheProvider provider = new SpringCacheProvider(this.cacheManager);
+
+  @Test
+  void shouldStoreEntriesInTheRegionOfTheNamespace() {
+    this.provider.setRegionPrefix("mybatis:");
+    SpringCache cache = new SpringCache(NAMESPACE, this.provider);
+
+    cache.putObject("key", "value");
+
+    assertThat(cache.getObject("key")).isEqualTo("value");
+    assertThat(this.cacheManager.getCache("mybatis:" + NAMESPACE).get("key").get()).isEqualTo("value");
+    assertThat(cache.getSize()).isEqualTo(1);
+
+    cache.putObject("key", null);
+    assertThat(cache.getObject("key")).isNull();
+  }
+
+  @Test
+  void shouldExpireEntries() throws InterruptedException {
+    SpringCache cache = new SpringCache(NAMESPACE, this.provider);
+    cache.setTimeToLive(1);
+
+    cache.putObject("key", "value");
+    Thread.sleep(10);
+
+    assertThat(cache.getObject("key")).isNull();
+    assertThat(this.cacheManager.getCache(NAMESPACE).get("key")).isNull();
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedEntries() {
+    SpringCache cache = new SpringCache(NAMESPACE, this.provider);
+    cache.setSize(2);
+
+    cache.putObject("a", 1);
+    cache.putObject("b", 2);
+    cache.getObject("a");
+    cache.putObject("c", 3);
+
+    assertThat(cache.getObject("a")).isEqualTo(1);
+    assertThat(cache.getObject("b")).isNull();
+    assertThat(cache.getObject("c")).isEqualTo(3);
+  }
+
+  @Test
+  void shouldPropagateInvalidationToOtherNodes() {
+    CacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+    ConcurrentMapCacheManager otherCacheManager = new ConcurrentMapCacheManager();
+    SpringCacheProvider otherProvider = new SpringCacheProvider(otherCacheManager);
+    this.provider.setInvalidationBus(bus);
+    otherProvider.setInvalidationBus(bus);
+    SpringCache cache = new SpringCache(NAMESPACE);
+    SpringCache otherCache = new SpringCache(NAMESPACE);
+    this.provider.bind(cache);
+    otherProvider.bind(otherCache);
+    cache.putObject("key", "value");
+    otherCache.putObject("key", "value");
+
+    cache.clear();
+
+    assertThat(cache.getObject("key")).isNull();
+    assertThat(otherCache.getObject("key")).isNull();
+  }
+
+  @Test
+  void shouldForgetTrackedKeysOnInvalidationFromOtherNodes() {
+    // a region that is not backed by a Map, so that the size is the number of tracked keys
+    ConcurrentMapCache region = Mockito.spy(new ConcurrentMapCache(NAMESPACE));
+    Mockito.doReturn(new Object()).when(region).getNativeCache();
+    SimpleCacheManager regionCacheManager = new SimpleCacheManager();
+    regionCacheManager.setCaches(List.of(region));
+    regionCacheManager.afterPropertiesSet();
+
+    CacheInvalidationBus bus = new InMemoryCacheInvalidationBus();
+    SpringCacheProvider regionProvider = new SpringCacheProvider(regionCacheManager);
+    regionProvider.setInvalidationBus(bus);
+    this.provider.setInvalidationBus(bus);
+    SpringCache cache = new SpringCache(NAMESPACE);
+    cache.setSize(10);
+    regionProvider.bind(cache);
+    SpringCache otherCache = new SpringCache(NAMESPACE);
+    this.provider.bind(otherCache);
+
+    cache.putObject("a", 1);
+    cache.putObject("b", 2);
+    assertThat(cache.getSize()).isEqualTo(2);
+
+    otherCache.clear();
+
+    assertThat(cache.getObject("a")).isNull();
+    assertThat(cache.getSize()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldFailWithoutProvider() {
+    SpringCache cache = new SpringCache("org.mybatis.spring.cache.Unbound");
+
+    assertThrows(CacheException.class, () -> cache.getObject("key"));
+  }
+
+  @Test
+  void shouldBindNamespacesParsedBySqlSessionFactoryBean() throws Exception {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(this.provider);
+
+    Cache cache = sqlSessionFactory.getConfiguration().getCache(NAMESPACE);
+    cache.putObject("key", "value");
+    assertThat(this.cacheManager.getCache(NAMESPACE).get("key").get()).isEqualTo("value");
+  }
+
+  @Test
+  void shouldBindEachConfigurationToItsOwnProvider() throws Exception {
+    ConcurrentMapCacheManager otherCacheManager = new ConcurrentMapCacheManager();
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(this.provider);
+    SqlSessionFactory otherSqlSessionFactory = createSqlSessionFactory(new SpringCacheProvider(otherCacheManager));
+
+    sqlSessionFactory.getConfiguration().getCache(NAMESPACE).putObject("key", "value");
+    otherSqlSessionFactory.getConfiguration().getCache(NAMESPACE).putObject("key", "otherValue");
+
+    assertThat(this.cacheManager.getCache(NAMESPACE).get("key").get()).isEqualTo("value");
+    assertThat(otherCacheManager.getCache(NAMESPACE).get("key").get()).isEqualTo("otherValue");
+  }
+
+  @Test
+  void shouldBindNamespaceOfMapperFactoryBean() throws Exception {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(null);
+    MapperFactoryBean<CachedMapper> mapperFactoryBean = new MapperFactoryBean<>(CachedMapper.class);
+    mapperFactoryBean.setSqlSessionFactory(sqlSessionFactory);
+    mapperFactoryBean.setCacheProvider(this.provider);
+    mapperFactoryBean.afterPropertiesSet();
+
+    Cache cache = sqlSessionFactory.getConfiguration().getCache(CachedMapper.class.getName());
+    cache.putObject("key", "value");
+    assertThat(this.cacheManager.getCache(CachedMapper.class.getName()).get("key").get()).isEqualTo("value");
+  }
+
+  private SqlSessionFactory createSqlSessionFactory(SpringCacheProvider cacheProvider) throws Exception {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(new MockDataSource());
+    factoryBean.setMapperLocations(new ClassPathResource("org/mybatis/spring/cache/SpringCacheMapper.xml"));
+    factoryBean.setCacheProvider(cacheProvider);
+    return factoryBean.getObject();
+  }
+
+  @CacheNamespace(implementation = SpringCache.class)
+  interface CachedMapper {
+  }
+
+}
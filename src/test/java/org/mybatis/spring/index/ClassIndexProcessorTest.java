@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ClassIndexProcessorTest {
+
+  @TempDir
+  Path classOutput;
+
+  @Test
+  void shouldIndexAllCompiledClasses() throws Exception {
+    compile(Collections.emptyList(), source("com.example.type.Foo", "package com.example.type; public class Foo {"
+        + " public static class Bar {} }"), source("com.example.other.Baz", "package com.example.other; class Baz {}"));
+
+    assertThat(readIndex()).containsExactly("com.example.other.Baz", "com.example.type.Foo",
+        "com.example.type.Foo$Bar");
+  }
+
+  @Test
+  void shouldIndexOnlyTheGivenPackages() throws Exception {
+    compile(Collections.singletonList("-A" + ClassIndexProcessor.PACKAGES_OPTION + "=com.example.type"),
+        source("com.example.type.Foo", "package com.example.type; public class Foo {}"),
+        source("com.example.typeother.Baz", "package com.example.typeother; class Baz {}"));
+
+    assertThat(readIndex()).containsExactly("com.example.type.Foo");
+  }
+
+  @Test
+  void shouldKeepTheClassesOfThePreviousIndex() throws Exception {
+    compile(Collections.emptyList(), source("com.example.type.Foo", "package com.example.type; public class Foo {}"));
+    compile(Collections.emptyList(), source("com.example.type.Bar", "package com.example.type; public class Bar {}"));
+
+    assertThat(readIndex()).containsExactly("com.example.type.Bar", "com.example.type.Foo");
+  }
+
+  @Test
+  void shouldDropTheClassesThatNoLongerExist() throws Exception {
+    compile(Collections.emptyList(), source("com.example.type.Foo", "package com.example.type; public class Foo {"
+        + " public static class Baz {} }"));
+    Files.delete(classOutput.resolve("com/example/type/Foo.class"));
+    Files.delete(classOutput.resolve("com/example/type/Foo$Baz.class"));
+    compile(Collections.emptyList(), source("com.example.type.Bar", "package com.example.type; public class Bar {}"));
+
+    assertThat(readIndex()).containsExactly("com.example.type.Bar");
+  }
+
+  private void compile(List<String> options, JavaFileObject... sources) throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classOutput.toFile()));
+      // as in an incremental build, the classes compiled before are on the class path
+      fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(classOutput.toFile()));
+      JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+          Arrays.asList(sources));
+      task.setProcessors(Collections.singletonList(new ClassIndexProcessor()));
+      assertThat(task.call()).isTrue();
+    }
+  }
+
+  private List<String> readIndex() throws Exception {
+    return Files.readAllLines(classOutput.resolve(ClassIndexProcessor.INDEX_PATH)).stream()
+        .filter(line -> !line.startsWith("#")).collect(Collectors.toList());
+  }
+
+  private static JavaFileObject source(String className, String code) {
+    return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"),
+        JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return code;
+      }
+    };
+  }
+
+}
@@ -19,6 +19,8 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import com.mockrunner.mock.jdbc.MockDataSource;
 
@@ -37,16 +39,27 @@ import org.mybatis.spring.SqlSessionFactoryBean;
 import org.mybatis.spring.SqlSessionTemplate;
 import org.mybatis.spring.mapper.child.MapperChildInterface;
 import org.mybatis.spring.type.DummyMapperFactoryBean;
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.aot.test.generate.TestGenerationContext;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationCode;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConstructorArgumentValues;
 import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
 import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.aot.ApplicationContextAotGenerator;
 import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.context.support.SimpleThreadScope;
 import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.test.tools.TestCompiler;
+import org.springframework.javapoet.ClassName;
 import org.springframework.mock.env.MockPropertySource;
 import org.springframework.stereotype.Component;
 
@@ -416,6 +429,69 @@ class MapperScannerConfigurerTest {
             .isEqualTo(AnnotatedMapperOnPropertyCondition.class);
   }
 
+  @Test
+  void testAheadOfTimeContribution() {
+    applicationContext.refreshForAotProcessing(new RuntimeHints());
+    MapperScannerConfigurer configurer = applicationContext.getBean(MapperScannerConfigurer.class);
+
+    BeanRegistrationAotContribution contribution = configurer
+        .processAheadOfTime(RegisteredBean.of(applicationContext.getBeanFactory(), "mapperChildInterface"));
+    assertThat(contribution).isNotNull();
+
+    RuntimeHints hints = new RuntimeHints();
+    GenerationContext generationContext = mock(GenerationContext.class);
+    when(generationContext.getRuntimeHints()).thenReturn(hints);
+    contribution.applyTo(generationContext, mock(BeanRegistrationCode.class));
+
+    assertThat(RuntimeHintsPredicates.proxies().forInterfaces(MapperChildInterface.class)).accepts(hints);
+    assertThat(RuntimeHintsPredicates.reflection().onType(MapperChildInterface.class)).accepts(hints);
+    assertThat(configurer.processAheadOfTime(RegisteredBean.of(applicationContext.getBeanFactory(), "mapperScanner")))
+        .isNull();
+    assertThat(configurer.isBeanExcludedFromAotProcessing()).isTrue();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void testAheadOfTimeGeneratedContext() {
+    applicationContext.getBeanDefinition("mapperScanner").getPropertyValues().add("basePackage",
+        "org.mybatis.spring.mapper.child");
+    // 生成代码无法写出MockDataSource实例，改为bean引用
+    GenericBeanDefinition dataSourceDefinition = new GenericBeanDefinition();
+    dataSourceDefinition.setBeanClass(MockDataSource.class);
+    applicationContext.registerBeanDefinition("dataSource", dataSourceDefinition);
+    applicationContext.getBeanDefinition("sqlSessionFactory").getPropertyValues().add("dataSource",
+        new RuntimeBeanReference("dataSource"));
+
+    TestGenerationContext generationContext = new TestGenerationContext();
+    ClassName className = new ApplicationContextAotGenerator().processAheadOfTime(applicationContext,
+        generationContext);
+    generationContext.writeGeneratedContent();
+
+    TestCompiler.forSystem().with(generationContext).compile(compiled -> {
+      GenericApplicationContext freshApplicationContext = new GenericApplicationContext();
+      try {
+        ApplicationContextInitializer<GenericApplicationContext> initializer = compiled
+            .getInstance(ApplicationContextInitializer.class, className.toString());
+        initializer.initialize(freshApplicationContext);
+
+        // the configurer is excluded, the mapper comes from the generated bean definition
+        assertThat(freshApplicationContext.getBeanNamesForType(MapperScannerConfigurer.class)).isEmpty();
+        BeanDefinition definition = freshApplicationContext.getBeanDefinition("mapperChildInterface");
+        assertThat(definition.getAttribute("factoryBeanObjectType")).isEqualTo(MapperChildInterface.class);
+        assertThat(freshApplicationContext.getBeanNamesForType(MapperChildInterface.class, false, false))
+            .containsExactly("mapperChildInterface");
+
+        freshApplicationContext.refresh();
+        MapperChildInterface mapper = freshApplicationContext.getBean(MapperChildInterface.class);
+        assertThat(mapper).isNotNull();
+        assertThat(freshApplicationContext.getBean(SqlSessionFactory.class).getConfiguration()
+            .hasMapper(MapperChildInterface.class)).isTrue();
+      } finally {
+        freshApplicationContext.close();
+      }
+    });
+  }
+
   private void setupSqlSessionFactory(String name) {
     GenericBeanDefinition definition = new GenericBeanDefinition();
     definition.setBeanClass(SqlSessionFactoryBean.class);
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010-2024 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mybatis.spring.transaction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockDataSource;
+
+import java.time.Duration;
+
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.AbstractMyBatisSpringTest;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+class ReadWriteRoutingInterceptorTest extends AbstractMyBatisSpringTest {
+
+  private static final MockDataSource readDataSource = new MockDataSource();
+
+  private SqlSessionFactory routingSqlSessionFactory;
+
+  private MockConnection readConnection;
+
+  @BeforeEach
+  void setupRoutingSqlSessionFactory() throws Exception {
+    // a new factory per test, so that the writes of a test do not route the reads of the next one to the primary
+    routingSqlSessionFactory = createRoutingSqlSessionFactory(new SpringManagedTransactionFactory());
+    routingSqlSessionFactory.getConfiguration().addMapper(RoutedMapper.class);
+  }
+
+  @BeforeEach
+  void setupReadConnection() {
+    readConnection = createMockConnection();
+    readDataSource.setupConnection(readConnection);
+  }
+
+  private static SqlSessionFactory createRoutingSqlSessionFactory(SpringManagedTransactionFactory transactionFactory)
+      throws Exception {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setMapperLocations(new ClassPathResource("org/mybatis/spring/TestMapper.xml"));
+    factoryBean.setDataSource(dataSource);
+    factoryBean.setReadDataSource(readDataSource);
+    factoryBean.setTransactionFactory(transactionFactory);
+    return factoryBean.getObject();
+  }
+
+  @Test
+  void shouldReadFromReplicaWithNoTx() throws Exception {
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+    assertThat(readConnection.isClosed()).as("should close the read Connection").isTrue();
+    assertExecuteCount(0);
+
+    // the primary connection is not used
+    connection = null;
+  }
+
+  @Test
+  void shouldWriteToPrimaryWithNoTx() {
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+
+    assertExecuteCount(1);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).isEmpty();
+  }
+
+  @Test
+  void shouldReadFromPrimaryInReadWriteTx() {
+    TransactionStatus status = txManager.getTransaction(new DefaultTransactionDefinition());
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    txManager.commit(status);
+
+    assertExecuteCount(1);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).isEmpty();
+  }
+
+  @Test
+  void shouldReadFromReplicaInReadOnlyTx() throws Exception {
+    DefaultTransactionDefinition txDef = new DefaultTransactionDefinition();
+    txDef.setReadOnly(true);
+    TransactionStatus status = txManager.getTransaction(txDef);
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+    txManager.commit(status);
+
+    assertExecuteCount(0);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+    assertThat(readConnection.isClosed()).as("should close the read Connection").isTrue();
+  }
+
+  @Test
+  void shouldReadFromPrimaryAfterWrite() {
+    try (SqlSession session = routingSqlSessionFactory.openSession()) {
+      session.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+      session.selectOne("org.mybatis.spring.TestMapper.findTest");
+      session.commit();
+    }
+
+    assertExecuteCount(2);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).isEmpty();
+  }
+
+  @Test
+  void shouldNotReuseReplicaStatementAfterWrite() {
+    try (SqlSession session = routingSqlSessionFactory.openSession(ExecutorType.REUSE)) {
+      session.selectOne("org.mybatis.spring.TestMapper.findTest");
+      session.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+      session.selectOne("org.mybatis.spring.TestMapper.findTest");
+      session.commit();
+    }
+
+    assertExecuteCount(2);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+  }
+
+  @Test
+  void shouldReadFromPrimaryAfterWriteInPreviousCall() {
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+
+    // each call has its own SqlSession and gets its own connection of the primary
+    assertExecuteCount(1);
+    assertThat(connectionTwo.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).isEmpty();
+  }
+
+  @Test
+  void shouldReadFromReplicaAfterReadAfterWriteWindow() throws Exception {
+    SpringManagedTransactionFactory transactionFactory = new SpringManagedTransactionFactory();
+    transactionFactory.setReadAfterWriteWindow(Duration.ZERO);
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(
+        createRoutingSqlSessionFactory(transactionFactory));
+    sqlSessionTemplate.insert("org.mybatis.spring.TestMapper.insertTest", "test1");
+    sqlSessionTemplate.selectOne("org.mybatis.spring.TestMapper.findTest");
+
+    assertExecuteCount(1);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+  }
+
+  @Test
+  void shouldReadFromPrimaryWithAnnotation() {
+    SqlSessionTemplate sqlSessionTemplate = new SqlSessionTemplate(routingSqlSessionFactory);
+    RoutedMapper mapper = sqlSessionTemplate.getMapper(RoutedMapper.class);
+
+    assertThat(mapper.findFromReplica()).isEqualTo(1);
+    assertThat(mapper.findFromPrimary()).isEqualTo(1);
+
+    assertExecuteCount(1);
+    assertThat(readConnection.getPreparedStatementResultSetHandler().getExecutedStatements()).hasSize(1);
+  }
+
+  @Test
+  void shouldRequireSpringManagedTransactionFactory() {
+    SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+    factoryBean.setDataSource(dataSource);
+    factoryBean.setReadDataSource(readDataSource);
+    factoryBean.setTransactionFactory(new JdbcTransactionFactory());
+
+    assertThatThrownBy(factoryBean::getObject).isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("readDataSource");
+
+    connection = null;
+  }
+
+  interface RoutedMapper {
+
+    @Select("SELECT 1")
+    int findFromReplica();
+
+    @ReadFromPrimary
+    @Select("SELECT 1")
+    int findFromPrimary();
+
+  }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2010-2022 the original author or authors.
+ * Copyright 2010-2024 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,8 +17,12 @@ package org.mybatis.spring.transaction;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.sql.Connection;
+
 import org.junit.jupiter.api.Test;
 import org.mybatis.spring.AbstractMyBatisSpringTest;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.DefaultTransactionDefinition;
 
@@ -96,4 +100,54 @@ class SpringTransactionManagerTest extends AbstractMyBatisSpringTest {
     assertThat(connection.isClosed()).as("should close the Connection").isTrue();
   }
 
+  @Test
+  void shouldNotGetConnectionWithLazyConnectionDataSourceProxyUntilUsed() throws Exception {
+    LazyConnectionDataSourceProxy lazyDataSource = createLazyDataSource();
+    DataSourceTransactionManager lazyTxManager = new DataSourceTransactionManager(lazyDataSource);
+    TransactionStatus status = lazyTxManager.getTransaction(new DefaultTransactionDefinition());
+
+    SpringManagedTransactionFactory transactionFactory = new SpringManagedTransactionFactory();
+    SpringManagedTransaction transaction = (SpringManagedTransaction) transactionFactory
+        .newTransaction(lazyDataSource, null, false);
+    transaction.getConnection();
+    transaction.commit();
+    transaction.close();
+
+    lazyTxManager.commit(status);
+    assertThat(connection.getNumberCommits()).as("should not call commit on Connection").isEqualTo(0);
+    assertThat(connection.isClosed()).as("should not get the Connection").isFalse();
+
+    connection = null;
+  }
+
+  @Test
+  void shouldGetConnectionWithLazyConnectionDataSourceProxyOnPrepare() throws Exception {
+    LazyConnectionDataSourceProxy lazyDataSource = createLazyDataSource();
+    DataSourceTransactionManager lazyTxManager = new DataSourceTransactionManager(lazyDataSource);
+    TransactionStatus status = lazyTxManager.getTransaction(new DefaultTransactionDefinition());
+
+    SpringManagedTransactionFactory transactionFactory = new SpringManagedTransactionFactory();
+    SpringManagedTransaction transaction = (SpringManagedTransaction) transactionFactory
+        .newTransaction(lazyDataSource, null, false);
+    transaction.getConnection().prepareStatement("SELECT 1");
+    transaction.commit();
+    transaction.close();
+    assertThat(connection.getNumberCommits()).as("should not call commit on Connection").isEqualTo(0);
+
+    lazyTxManager.commit(status);
+    assertThat(connection.getPreparedStatementResultSetHandler().getPreparedStatements()).hasSize(1);
+    assertThat(connection.getNumberCommits()).as("should call commit on Connection").isEqualTo(1);
+    assertThat(connection.isClosed()).as("should close the Connection").isTrue();
+  }
+
+  private static LazyConnectionDataSourceProxy createLazyDataSource() {
+    // the defaults are set, so that the proxy does not get a connection to detect them
+    LazyConnectionDataSourceProxy lazyDataSource = new LazyConnectionDataSourceProxy();
+    lazyDataSource.setTargetDataSource(dataSource);
+    lazyDataSource.setDefaultAutoCommit(true);
+    lazyDataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+    lazyDataSource.afterPropertiesSet();
+    return lazyDataSource;
+  }
+
 }